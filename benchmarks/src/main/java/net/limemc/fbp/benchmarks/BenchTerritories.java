@@ -0,0 +1,50 @@
+package net.limemc.fbp.benchmarks;
+
+import net.limemc.fbp.api.region.Point;
+import net.limemc.fbp.api.region.Territory;
+import net.limemc.fbp.api.region.TerritoryTypes;
+import org.bukkit.World;
+
+/**
+ * Территории одинакового размаха разных типов с центром в точке (0, 64, 0).
+ */
+public final class BenchTerritories {
+    public static final int CENTER_Y = 64;
+
+    private BenchTerritories() {
+    }
+
+    /**
+     * @param type Название типа: {@code CUBE}, {@code CYL}, {@code SPHERE} или {@code POLYGON}.
+     * @param size Размах территории в блоках по X и Z. Высота ограничена высотой мира.
+     */
+    public static Territory create(String type, World world, int size) {
+        int radius = size / 2;
+        int minY = Math.max(StubWorld.MIN_HEIGHT, CENTER_Y - radius);
+        int maxY = Math.min(StubWorld.MAX_HEIGHT - 1, CENTER_Y + radius);
+
+        switch (type) {
+            case "CUBE":
+                return new Territory(TerritoryTypes.CUBE,
+                        new Point(world, -radius, minY, -radius), new Point(world, radius, maxY, radius));
+            case "CYL":
+                return new Territory(TerritoryTypes.CYL,
+                        new Point(world, 0, maxY, 0), new Point(world, -radius, minY, 0));
+            case "SPHERE":
+                return new Territory(TerritoryTypes.SPHERE,
+                        new Point(world, 0, CENTER_Y, 0), new Point(world, radius, CENTER_Y, 0));
+            case "POLYGON":
+                Point[] vertices = new Point[7];
+
+                for (int i = 0; i < vertices.length; i++) {
+                    double angle = Math.PI * 2 * i / vertices.length;
+                    vertices[i] = new Point(world, (int) Math.round(Math.cos(angle) * radius),
+                            i == 0 ? minY : maxY, (int) Math.round(Math.sin(angle) * radius));
+                }
+
+                return new Territory(TerritoryTypes.POLYGON, vertices);
+            default:
+                throw new IllegalArgumentException("Unknown territory type " + type);
+        }
+    }
+}
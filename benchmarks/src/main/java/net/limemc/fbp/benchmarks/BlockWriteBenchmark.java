@@ -0,0 +1,122 @@
+package net.limemc.fbp.benchmarks;
+
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.limemc.fbp.api.region.Territory;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.limemc.fbp.api.workload.impl.PackedBlockWorkload;
+import net.minecraft.world.level.block.state.IBlockData;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячий путь записи без сервера: раскладка территории в {@link PackedBlockWorkload}, запись его отрезков
+ * и отбор неизменённых позиций циклами {@link BatchBlockChanger} над {@link InMemorySections}
+ * и накопление изменённых позиций в {@link ChunkRefresher}.
+ * Палитры, освещение и отправка пакетов сервера здесь не участвуют.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockWriteBenchmark {
+    @Param({"CUBE", "SPHERE"})
+    public String type;
+
+    @Param({"16", "64", "128"})
+    public int size;
+
+    private World world;
+    private Territory territory;
+    private PackedBlockWorkload packed;
+    private final InMemorySections sections = new InMemorySections();
+    private final InMemorySections placed = new InMemorySections();
+    private final Object[] palette = {new Object(), new Object()};
+    private short[] changedPositions;
+    private short[] changedStates;
+
+    @Setup
+    public void setup() {
+        this.world = StubWorld.create("benchmark");
+        this.territory = BenchTerritories.create(this.type, this.world, this.size);
+        this.packed = this.pack();
+        this.changedPositions = new short[this.packed.getPositions().length];
+        this.changedStates = new short[this.changedPositions.length];
+
+        // Половина позиций уже содержит целевой блок, чтобы отбор не был тривиальным
+        for (int run = 0; run < this.packed.getRuns(); run++) {
+            BatchBlockChanger.writeStates(this.placed.get(this.packed.getRunKey(run)), this.packed.getPositions(), this.packed.getStates(),
+                    this.packed.getRunStart(run), this.packed.getRunStart(run) + (this.packed.getRunEnd(run) - this.packed.getRunStart(run)) / 2,
+                    this.palette);
+        }
+    }
+
+    /**
+     * Раскладка территории в упакованную очередь, как на этапе {@link net.limemc.fbp.api.SessionStage#RESOLVE}.
+     */
+    @Benchmark
+    public PackedBlockWorkload pack() {
+        // Конструктору нужна только длина палитры, сами состояния при раскладке не читаются
+        PackedBlockWorkload workload = new PackedBlockWorkload(this.world, new IBlockData[2], false, false,
+                new ChunkRefresher(this.world), this.territory.getTerritoryBlocksCount());
+
+        this.territory.forEachBlock((x, y, z) -> workload.add(x, y, z, (x ^ z) & 1));
+        return workload;
+    }
+
+    @Benchmark
+    public int write() {
+        this.sections.clear();
+
+        for (int run = 0; run < this.packed.getRuns(); run++) {
+            BatchBlockChanger.writeStates(this.sections.get(this.packed.getRunKey(run)), this.packed.getPositions(), this.packed.getStates(),
+                    this.packed.getRunStart(run), this.packed.getRunEnd(run), this.palette);
+        }
+
+        return this.sections.size();
+    }
+
+    /**
+     * Отбор позиций, где блок действительно изменится, как при {@link PackedBlockWorkload#isSkipUnchanged()}.
+     */
+    @Benchmark
+    public int filterUnchanged() {
+        int changed = 0;
+
+        for (int run = 0; run < this.packed.getRuns(); run++) {
+            changed += BatchBlockChanger.filterUnchanged(this.placed.get(this.packed.getRunKey(run)), this.packed.getPositions(),
+                    this.packed.getStates(), this.packed.getRunStart(run), this.packed.getRunEnd(run), this.palette,
+                    this.changedPositions, this.changedStates, changed);
+        }
+
+        return changed;
+    }
+
+    @Benchmark
+    public int refresh() {
+        ChunkRefresher refresher = new ChunkRefresher(this.world);
+
+        for (int run = 0; run < this.packed.getRuns(); run++) {
+            long key = this.packed.getRunKey(run);
+
+            refresher.add(PackedPositions.sectionX(key), PackedPositions.sectionY(key), PackedPositions.sectionZ(key),
+                    this.packed.getPositions(), this.packed.getRunStart(run), this.packed.getRunEnd(run));
+        }
+
+        return refresher.getSectionsCount();
+    }
+}
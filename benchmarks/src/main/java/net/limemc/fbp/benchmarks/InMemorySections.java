@@ -0,0 +1,51 @@
+package net.limemc.fbp.benchmarks;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.limemc.fbp.api.utility.SectionBlocks;
+
+/**
+ * Секции в памяти вместо чанков сервера: блок на каждую из 4096 позиций секции. Запись и сравнение идут
+ * теми же циклами {@link net.limemc.fbp.api.utility.BatchBlockChanger#writeStates(SectionBlocks, short[], short[], int, int, Object[])}
+ * и {@link net.limemc.fbp.api.utility.BatchBlockChanger#filterUnchanged(SectionBlocks, short[], short[], int, int, Object[], short[], short[], int)},
+ * что и для палитр сервера, но без самих палитр и их блокировок.
+ */
+public final class InMemorySections {
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * @return Секция по ключу {@link net.limemc.fbp.api.utility.PackedPositions#sectionKey(int, int, int)};
+     * отсутствующая создаётся пустой.
+     */
+    public Section get(long key) {
+        Section section = this.sections.get(key);
+
+        if (section == null) {
+            section = new Section();
+            this.sections.put(key, section);
+        }
+
+        return section;
+    }
+
+    public int size() {
+        return this.sections.size();
+    }
+
+    public void clear() {
+        this.sections.clear();
+    }
+
+    public static final class Section implements SectionBlocks<Object> {
+        private final Object[] blocks = new Object[4096];
+
+        @Override
+        public Object get(int x, int y, int z) {
+            return this.blocks[x << 8 | z << 4 | y];
+        }
+
+        @Override
+        public void set(int x, int y, int z, Object block) {
+            this.blocks[x << 8 | z << 4 | y] = block;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net.limemc.fbp.benchmarks;
+
+import org.bukkit.World;
+
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+/**
+ * Мир без сервера для бенчмарков. Отвечает только на то, что читают геометрия территорий и очереди записи:
+ * имя, идентификатор и границы высоты. Все чанки считаются загруженными, остальные методы возвращают
+ * значения по умолчанию, поэтому код, которому нужен настоящий сервер, сюда передавать нельзя.
+ */
+public final class StubWorld {
+    public static final int MIN_HEIGHT = -64;
+    public static final int MAX_HEIGHT = 320;
+
+    private StubWorld() {
+    }
+
+    public static World create(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+
+        return (World) Proxy.newProxyInstance(StubWorld.class.getClassLoader(), new Class<?>[] {World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return uid.hashCode();
+                case "toString":
+                case "getName":
+                    return name;
+                case "getUID":
+                    return uid;
+                case "getMinHeight":
+                    return MIN_HEIGHT;
+                case "getMaxHeight":
+                    return MAX_HEIGHT;
+                case "isChunkLoaded":
+                    return true;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+
+        if (type == boolean.class) {
+            return false;
+        }
+
+        if (type == char.class) {
+            return '\0';
+        }
+
+        if (type == long.class) {
+            return 0L;
+        }
+
+        if (type == float.class) {
+            return 0F;
+        }
+
+        if (type == double.class) {
+            return 0D;
+        }
+
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+
+        if (type == short.class) {
+            return (short) 0;
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,132 @@
+package net.limemc.fbp.benchmarks;
+
+import net.limemc.fbp.api.region.Territory;
+import net.limemc.fbp.api.region.TerritoryGeometry;
+import net.limemc.fbp.api.region.types.SpanShape;
+import net.limemc.fbp.api.region.types.SpanTerritory;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверки принадлежности, поиск чанков и обход блоков территорий разных типов и размеров.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerritoryBenchmark {
+    private static final int PROBES = 4096;
+
+    @Param({"CUBE", "CYL", "SPHERE", "POLYGON"})
+    public String type;
+
+    @Param({"16", "64", "256"})
+    public int size;
+
+    private Territory territory;
+    private SpanShape shape;
+    private Location[] probes;
+    private int[] probeCoordinates;
+
+    @Setup
+    public void setup() {
+        World world = StubWorld.create("benchmark");
+
+        this.territory = BenchTerritories.create(this.type, world, this.size);
+        this.shape = this.territory.getGeometry().getShape();
+        this.probes = new Location[PROBES];
+        this.probeCoordinates = new int[PROBES * 3];
+
+        // Точки берутся из границ территории с запасом, чтобы попадали и внутрь, и наружу
+        TerritoryGeometry geometry = this.territory.getGeometry();
+        int margin = Math.max(2, this.size / 8);
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int i = 0; i < PROBES; i++) {
+            int x = random.nextInt(geometry.getMinX() - margin, geometry.getMaxX() + margin + 1);
+            int y = random.nextInt(geometry.getMinY() - margin, geometry.getMaxY() + margin + 1);
+            int z = random.nextInt(geometry.getMinZ() - margin, geometry.getMaxZ() + margin + 1);
+
+            this.probes[i] = new Location(world, x, y, z);
+            this.probeCoordinates[i * 3] = x;
+            this.probeCoordinates[i * 3 + 1] = y;
+            this.probeCoordinates[i * 3 + 2] = z;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int isLocationInside() {
+        int inside = 0;
+
+        for (Location probe : this.probes) {
+            if (this.territory.isLocationInside(probe))
+                inside++;
+        }
+
+        return inside;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int shapeContains() {
+        int[] spans = new int[this.shape.getMaxSpans() * 2];
+        int inside = 0;
+
+        for (int i = 0; i < PROBES; i++) {
+            if (this.shape.contains(this.probeCoordinates[i * 3], this.probeCoordinates[i * 3 + 1], this.probeCoordinates[i * 3 + 2], spans))
+                inside++;
+        }
+
+        return inside;
+    }
+
+    @Benchmark
+    public List<int[]> chunkCoordinates() {
+        return SpanTerritory.getTerritoryChunkCoordinates(this.shape);
+    }
+
+    @Benchmark
+    public long blocksCount() {
+        return this.shape.getBlocksCount();
+    }
+
+    @Benchmark
+    public void forEachBlock(Blackhole blackhole) {
+        this.territory.forEachBlock((x, y, z) -> blackhole.consume(x ^ y ^ z));
+    }
+
+    @Benchmark
+    public int sectionCoverage() {
+        int covered = 0;
+
+        for (int sectionX = this.shape.getMinX() >> 4; sectionX <= this.shape.getMaxX() >> 4; sectionX++) {
+            for (int sectionY = this.shape.getMinY() >> 4; sectionY <= this.shape.getMaxY() >> 4; sectionY++) {
+                for (int sectionZ = this.shape.getMinZ() >> 4; sectionZ <= this.shape.getMaxZ() >> 4; sectionZ++) {
+                    covered += this.shape.getSectionCoverage(sectionX, sectionY, sectionZ).ordinal();
+                }
+            }
+        }
+
+        return covered;
+    }
+}
@@ -0,0 +1,104 @@
+package net.limemc.fbp.benchmarks;
+
+import net.limemc.fbp.api.workload.Workload;
+import net.limemc.fbp.api.workload.WorkloadRunnable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы очереди {@link WorkloadRunnable}: постановка и обработка множества мелких нагрузок
+ * за один вызов и по частям, как это делает планировщик в пределах бюджета тика.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkloadBenchmark {
+    /**
+     * Бюджет одного вызова {@link WorkloadRunnable#drain(long)} в тесте по частям.
+     */
+    private static final long SLICE_NANOS = 50_000;
+
+    @Param({"16", "1024", "65536"})
+    public int workloads;
+
+    private long counter;
+
+    @Benchmark
+    public long drainAll() {
+        WorkloadRunnable runnable = this.fill();
+
+        runnable.drain(Long.MAX_VALUE);
+        return this.counter;
+    }
+
+    @Benchmark
+    public int drainSliced() {
+        WorkloadRunnable runnable = this.fill();
+        int slices = 1;
+
+        while (!runnable.drain(System.nanoTime() + SLICE_NANOS)) {
+            slices++;
+        }
+
+        return slices;
+    }
+
+    /**
+     * Нагрузки, которые выполняются по частям: каждая возвращает {@code false}, пока не выполнит {@code steps} шагов.
+     */
+    @Benchmark
+    public long drainResumable() {
+        WorkloadRunnable runnable = new WorkloadRunnable();
+
+        for (int i = 0; i < this.workloads; i++) {
+            runnable.addWorkload(new StepWorkload(4));
+        }
+
+        while (!runnable.drain(Long.MAX_VALUE)) {
+            this.counter++;
+        }
+
+        return this.counter;
+    }
+
+    private WorkloadRunnable fill() {
+        WorkloadRunnable runnable = new WorkloadRunnable();
+
+        for (int i = 0; i < this.workloads; i++) {
+            runnable.addWorkload(() -> this.counter++);
+        }
+
+        return runnable;
+    }
+
+    private static final class StepWorkload implements Workload {
+        private int steps;
+
+        private StepWorkload(int steps) {
+            this.steps = steps;
+        }
+
+        @Override
+        public void compute() {
+            this.steps = 0;
+        }
+
+        @Override
+        public boolean compute(long stopTime) {
+            return --this.steps <= 0;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package net.limemc.fbp.api;
 
 import lombok.NonNull;
+import net.limemc.fbp.api.pattern.Pattern;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface FastSession {
 
     void addBlock(@NonNull BlockData blockData);
@@ -16,15 +19,89 @@ public interface FastSession {
 
     void addBlock(@NonNull Material material);
 
+    /**
+     * Задаёт шаблон заполнения вместо одного блока. Шаблон применяется за один проход по территории.
+     */
+    void addBlock(@NonNull Pattern pattern);
+
     void setAsync(boolean async);
 
+    /**
+     * Записывать блоки с блокировкой палитры секции, как при обычной установке блока сервером. Обновления соседей
+     * при этом не вызываются.
+     */
     void setApplyPhysics(boolean applyPhysics);
 
     void setRemoveTileEntity(boolean removeTileEntity);
 
-    void apply();
+    /**
+     * Включает построение секций в пуле потоков: основной поток только подставляет готовые секции.
+     * Работает при любых остальных настройках: {@link #setApplyPhysics(boolean)} только включает блокировку палитры
+     * при записи, а копия секции в пуле принадлежит одному потоку и пишется без неё.
+     */
+    void setParallel(boolean parallel);
+
+    /**
+     * Включает запись прежних блоков при {@link #apply()}, чтобы их можно было вернуть через {@link #restore()}.
+     * Снимок хранит палитру различных блоков для каждой секции, а не объект на каждый блок.
+     */
+    void setRecordSnapshot(boolean recordSnapshot);
+
+    /**
+     * Включает сравнение с текущими блоками: позиции, где уже стоит нужный блок,
+     * не записываются и не отправляются игрокам.
+     */
+    void setSkipUnchanged(boolean skipUnchanged);
+
+    /**
+     * Включает загрузку чанков перед записью: на все чанки территории ставятся тикеты плагина, запись начинается
+     * только когда все они загружены, а тикеты снимаются после отправки изменений. Без неё незагруженный чанк
+     * загружается или генерируется синхронно в момент записи первого блока.
+     */
+    void setPreloadChunks(boolean preloadChunks);
+
+    /**
+     * Отключает пересчёт освещения после записи. Блоки пишутся прямо в палитры секций в обход движка освещения,
+     * поэтому без пересчёта возможны тёмные или засвеченные участки; отключать стоит для построек,
+     * которым освещение не важно, например в мирах без игроков.
+     */
+    void setSkipLighting(boolean skipLighting);
+
+    /**
+     * Применяет сессию по этапам {@link SessionStage}. В асинхронном режиме этапы выполняются через общий
+     * планировщик, и метод сразу возвращает незавершённое будущее, поэтому ждать его в основном потоке нельзя:
+     * дальнейшие действия, например следующую сессию, нужно добавлять к будущему.
+     *
+     * @return Будущее, которое завершается в основном потоке после всех этапов или с ошибкой первого упавшего этапа.
+     */
+    CompletableFuture<SessionResult> apply();
+
+    /**
+     * @return Количество блоков, пропущенных последним {@link #apply()} из-за совпадения с целевым блоком.
+     */
+    long getSkippedBlocks();
+
+    /**
+     * Возвращает блоки, которые были на месте последнего {@link #apply()}, тем же пакетным путём.
+     *
+     * Действия {@link #thenRun(Runnable)} при этом не выполняются.
+     *
+     * @return Будущее с результатом восстановления, как у {@link #apply()}.
+     * @throws IllegalStateException если запись снимка не была включена.
+     */
+    CompletableFuture<SessionResult> restore();
 
+    /**
+     * Добавляет действие, которое выполняется на этапе {@link SessionStage#COMPLETE} каждого {@link #apply()}.
+     * Действия выполняются в порядке добавления, до завершения будущего из {@link #apply()}.
+     */
     void thenRun(@NonNull Runnable runnable);
 
+    /**
+     * Ничего не освобождает и не запускает сборку мусора: данные сессии освобождаются вместе с ней.
+     * Подробные показатели выполнения отдаёт {@link SessionResult} из {@link #apply()} и {@link SessionMetrics}.
+     *
+     * @return Время в миллисекундах с первого {@link #apply()} или {@code -1}, если сессия не применялась.
+     */
     long flush();
 }
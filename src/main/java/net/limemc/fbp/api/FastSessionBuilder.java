@@ -1,8 +1,12 @@
 package net.limemc.fbp.api;
 
 import lombok.NonNull;
+import net.limemc.fbp.api.pattern.Pattern;
+import net.limemc.fbp.api.region.Point;
 import net.limemc.fbp.api.region.Territory;
+import net.limemc.fbp.api.template.Template;
 import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
 
 public class FastSessionBuilder {
 
@@ -16,6 +20,13 @@ public class FastSessionBuilder {
         return new FastSessionBuilder(location);
     }
 
+    /**
+     * Сессия вставки шаблона углом в блок {@code origin}.
+     */
+    public static FastSessionBuilder builder(@NonNull Template template, @NonNull Point origin) {
+        return new FastSessionBuilder(template, origin);
+    }
+
     public FastSessionBuilder(@NonNull Territory territory) {
         this.session = new FastSessionImpl(territory, false, true, true);
     }
@@ -24,6 +35,10 @@ public class FastSessionBuilder {
         this.session = new FastSessionImpl(location, false, true, true);
     }
 
+    public FastSessionBuilder(@NonNull Template template, @NonNull Point origin) {
+        this.session = new FastSessionImpl(template, origin, false, true, true);
+    }
+
     public FastSessionBuilder async(boolean async) {
         session.setAsync(async);
         return this;
@@ -39,6 +54,41 @@ public class FastSessionBuilder {
         return this;
     }
 
+    public FastSessionBuilder parallel(boolean parallel) {
+        session.setParallel(parallel);
+        return this;
+    }
+
+    public FastSessionBuilder recordSnapshot(boolean recordSnapshot) {
+        session.setRecordSnapshot(recordSnapshot);
+        return this;
+    }
+
+    public FastSessionBuilder skipUnchanged(boolean skipUnchanged) {
+        session.setSkipUnchanged(skipUnchanged);
+        return this;
+    }
+
+    public FastSessionBuilder preloadChunks(boolean preloadChunks) {
+        session.setPreloadChunks(preloadChunks);
+        return this;
+    }
+
+    public FastSessionBuilder skipLighting(boolean skipLighting) {
+        session.setSkipLighting(skipLighting);
+        return this;
+    }
+
+    public FastSessionBuilder block(@NonNull BlockData blockData) {
+        session.addBlock(blockData);
+        return this;
+    }
+
+    public FastSessionBuilder pattern(@NonNull Pattern pattern) {
+        session.addBlock(pattern);
+        return this;
+    }
+
     public FastSessionBuilder thenRun(@NonNull Runnable runnable) {
         session.thenRun(runnable);
         return this;
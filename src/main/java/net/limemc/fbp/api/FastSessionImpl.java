@@ -3,17 +3,39 @@ package net.limemc.fbp.api;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import net.limemc.fbp.api.pattern.Pattern;
+import net.limemc.fbp.api.pattern.SinglePattern;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.limemc.fbp.api.refresh.ChunkRelighter;
+import net.limemc.fbp.api.region.Point;
 import net.limemc.fbp.api.region.Territory;
-import net.limemc.fbp.api.utility.BlockChanger;
+import net.limemc.fbp.api.snapshot.SessionSnapshot;
+import net.limemc.fbp.api.template.Template;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
 import net.limemc.fbp.api.workload.Workload;
 import net.limemc.fbp.api.workload.WorkloadRunnable;
-import net.limemc.fbp.api.workload.impl.BlockSetWorkload;
+import net.limemc.fbp.api.workload.WorkloadScheduler;
+import net.limemc.fbp.api.workload.impl.ChunkPreloadWorkload;
+import net.limemc.fbp.api.workload.impl.PackedBlockWorkload;
+import net.limemc.fbp.api.workload.impl.RelightWorkload;
+import net.limemc.fbp.api.workload.impl.ParallelSectionWorkload;
+import net.limemc.fbp.api.workload.impl.SnapshotRestoreWorkload;
+import net.limemc.fbp.api.workload.impl.TemplatePasteWorkload;
+import net.minecraft.world.level.block.state.IBlockData;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
 class FastSessionImpl implements FastSession {
 
     @Setter
@@ -25,10 +47,30 @@ class FastSessionImpl implements FastSession {
     @Setter
     private boolean removeTileEntity;
 
-    private Runnable runnable;
+    @Setter
+    private boolean parallel;
+
+    @Setter
+    private boolean recordSnapshot;
+
+    @Setter
+    private boolean skipUnchanged;
+
+    @Setter
+    private boolean preloadChunks;
+
+    @Setter
+    private boolean skipLighting;
+
+    private SessionSnapshot snapshot;
+    private LongSupplier skippedBlocks;
+
+    private final List<Runnable> callbacks = new ArrayList<>();
 
     private Location location;
     private Territory territory;
+    private Template template;
+    private Point origin;
 
     public FastSessionImpl(final @NonNull Location location, boolean async, boolean applyPhysics, boolean removeTileEntity) {
         this.location = location;
@@ -44,12 +86,30 @@ class FastSessionImpl implements FastSession {
         this.removeTileEntity = removeTileEntity;
     }
 
-    private BlockData blockData;
+    /**
+     * Сессия вставки шаблона: блоки берутся из шаблона, а {@link #addBlock(BlockData)} и шаблоны заполнения не нужны.
+     *
+     * @param origin Блок, в который встанет угол шаблона с наименьшими координатами.
+     */
+    public FastSessionImpl(final @NonNull Template template, final @NonNull Point origin, boolean async, boolean applyPhysics, boolean removeTileEntity) {
+        this.template = template;
+        this.origin = origin.clone();
+        this.async = async;
+        this.applyPhysics = applyPhysics;
+        this.removeTileEntity = removeTileEntity;
+    }
+
+    private Pattern pattern;
     private Long startTimeMillis;
 
     @Override
     public void addBlock(@NonNull BlockData blockData) {
-        this.blockData = blockData;
+        this.pattern = new SinglePattern(blockData);
+    }
+
+    @Override
+    public void addBlock(@NonNull Pattern pattern) {
+        this.pattern = pattern;
     }
 
     @Override
@@ -68,54 +128,201 @@ class FastSessionImpl implements FastSession {
     }
 
     @Override
-    public void apply() {
+    public CompletableFuture<SessionResult> apply() {
         if (startTimeMillis == null) {
             startTimeMillis = System.currentTimeMillis();
         }
 
+        if (template != null) {
+            return applyTemplate();
+        }
+
         if (location == null && territory == null) {
             throw new NullPointerException("Location or Territory is null!");
         }
 
+        if (pattern == null) {
+            throw new NullPointerException("Block or Pattern is null!");
+        }
+
+        World world = location != null ? Objects.requireNonNull(location.getWorld()) : territory.getWorld();
+        SessionResult result = new SessionResult(world);
+        long resolveStart = System.nanoTime();
+
+        ChunkRefresher refresher = new ChunkRefresher(world);
+        PackedBlockWorkload workload = createWorkload(world, refresher);
+        workload.setSkipUnchanged(skipUnchanged);
+        skippedBlocks = workload::getSkipped;
+
+        if (recordSnapshot) {
+            snapshot = new SessionSnapshot(world);
+            workload.setSnapshot(snapshot);
+        }
+
+        result.addStageNanos(SessionStage.RESOLVE, System.nanoTime() - resolveStart);
+        return execute(result, wrapParallel(workload), workload::getSize, workload::getSkipped, refresher,
+                createPreload(world), true);
+    }
+
+    /**
+     * Вставляет шаблон секция за секцией. Секции и так пишутся целиком, поэтому {@link #setParallel(boolean)}
+     * здесь не используется.
+     */
+    private CompletableFuture<SessionResult> applyTemplate() {
+        World world = Objects.requireNonNull(origin.getWorld(), "Origin world is null!");
+        SessionResult result = new SessionResult(world);
+        long resolveStart = System.nanoTime();
+
+        ChunkRefresher refresher = new ChunkRefresher(world);
+        TemplatePasteWorkload workload = new TemplatePasteWorkload(template, world, origin.getX(), origin.getY(), origin.getZ(),
+                applyPhysics, removeTileEntity, refresher);
+
+        workload.setSkipUnchanged(skipUnchanged);
+        skippedBlocks = workload::getSkipped;
+
+        if (recordSnapshot) {
+            snapshot = new SessionSnapshot(world);
+            workload.setSnapshot(snapshot);
+        }
+
+        ChunkPreloadWorkload preload = preloadChunks
+                ? new ChunkPreloadWorkload(world, template.getChunkCoordinates(origin.getX(), origin.getZ())) : null;
+
+        result.addStageNanos(SessionStage.RESOLVE, System.nanoTime() - resolveStart);
+        return execute(result, workload, workload::getBlocks, workload::getSkipped, refresher, preload, true);
+    }
+
+    @Override
+    public long getSkippedBlocks() {
+        return skippedBlocks != null ? skippedBlocks.getAsLong() : 0L;
+    }
+
+    @Override
+    public CompletableFuture<SessionResult> restore() {
+        if (snapshot == null) {
+            throw new IllegalStateException("Snapshot is not recorded, enable it before apply()");
+        }
+
+        SessionResult result = new SessionResult(snapshot.getWorld());
+        long resolveStart = System.nanoTime();
+
+        ChunkRefresher refresher = new ChunkRefresher(snapshot.getWorld());
+        ChunkPreloadWorkload preload = preloadChunks ? new ChunkPreloadWorkload(snapshot.getWorld(), snapshot.getChunkCoordinates()) : null;
+        SnapshotRestoreWorkload workload = new SnapshotRestoreWorkload(snapshot, removeTileEntity, refresher);
+
+        result.addStageNanos(SessionStage.RESOLVE, System.nanoTime() - resolveStart);
+        return execute(result, workload, workload::getBlocks, () -> 0L, refresher, preload, false);
+    }
+
+    /**
+     * Собирает этапы сессии в {@link SessionPipeline} и запускает их через общий планировщик
+     * или сразу в текущем потоке.
+     *
+     * @param blocks    Количество позиций в очереди записи, читается после записи.
+     * @param skipped   Количество пропущенных позиций, читается после записи.
+     * @param preload   Загрузка чанков перед записью или {@code null}. Тикеты снимаются после всех этапов.
+     * @param callbacks Выполнить действия {@link #thenRun(Runnable)} на этапе {@link SessionStage#COMPLETE}.
+     */
+    private CompletableFuture<SessionResult> execute(@NonNull SessionResult result, @NonNull Workload workload,
+                                                     @NonNull LongSupplier blocks, @NonNull LongSupplier skipped,
+                                                     @NonNull ChunkRefresher refresher, ChunkPreloadWorkload preload,
+                                                     boolean callbacks) {
+        ChunkRelighter relighter = skipLighting ? null : new ChunkRelighter(refresher.getWorld());
+        refresher.setRelighter(relighter);
+
+        SessionPipeline pipeline = new SessionPipeline(result);
+
+        if (preload != null) {
+            pipeline.add(SessionStage.PRELOAD, preload);
+            pipeline.addFinalizer(preload::release);
+        }
+
+        pipeline.add(SessionStage.WRITE, workload);
+        // Отправка обновляет счётчики блоков секций, по которым движок освещения определяет пустые секции
+        pipeline.add(SessionStage.REFRESH, refresher::flush);
+
+        if (relighter != null)
+            pipeline.add(SessionStage.RELIGHT, new RelightWorkload(relighter));
+
+        List<Runnable> then = callbacks ? new ArrayList<>(this.callbacks) : Collections.emptyList();
+
+        pipeline.add(SessionStage.COMPLETE, () -> {
+            result.setBlocks(blocks.getAsLong());
+            result.setSkippedBlocks(skipped.getAsLong());
+            result.setPreloadedChunks(preload != null ? preload.getChunksCount() : 0);
+            result.setSections(refresher.getSectionsCount());
+            result.setPackets(refresher.getSentPackets());
+            result.setBytes(refresher.getSentBytes());
+            result.setResentChunks(refresher.getResentChunks());
+            then.forEach(Runnable::run);
+        });
+
         if (async) {
             WorkloadRunnable workloadRunnable = new WorkloadRunnable();
 
-            if (runnable != null)
-                workloadRunnable.whenComplete(runnable);
+            workloadRunnable.addWorkload(pipeline);
+            workloadRunnable.onTickEnd(refresher::flush);
 
-            if (location != null) {
-                Workload workload = new BlockSetWorkload(location, blockData, applyPhysics, removeTileEntity);
-                workloadRunnable.addWorkload(workload);
-            } else {
-                for (Block block : territory.getTerritoryBlocks()) {
-                    Workload workload = new BlockSetWorkload(block.getLocation(), blockData, applyPhysics, removeTileEntity);
-                    workloadRunnable.addWorkload(workload);
-                }
-            }
+            result.setQueueDepth(WorkloadScheduler.getInstance().getQueueSize());
+            workloadRunnable.schedule();
+        } else {
+            pipeline.compute();
+        }
 
-            return;
+        return pipeline.getFuture();
+    }
+
+    private ChunkPreloadWorkload createPreload(@NonNull World world) {
+        if (!preloadChunks) {
+            return null;
         }
 
+        List<int[]> chunks = location != null
+                ? Collections.singletonList(new int[] {location.getBlockX() >> 4, location.getBlockZ() >> 4})
+                : territory.getTerritoryChunkCoordinates();
+
+        return new ChunkPreloadWorkload(world, chunks);
+    }
+
+    /**
+     * Раскладывает территорию или локацию в упакованную очередь. Шаблон вычисляется здесь один раз на блок,
+     * а при записи остаётся только обращение к палитре по индексу.
+     */
+    private PackedBlockWorkload createWorkload(@NonNull World world, @NonNull ChunkRefresher refresher) {
+        Pattern pattern = this.pattern;
+        IBlockData[] palette = BatchBlockChanger.toPalette(pattern.getPalette());
+
         if (location != null) {
-            BlockChanger.setBlock(location, blockData, applyPhysics, removeTileEntity);
+            PackedBlockWorkload workload = new PackedBlockWorkload(world, palette, applyPhysics, removeTileEntity, refresher, 1);
+            int x = location.getBlockX(), y = location.getBlockY(), z = location.getBlockZ();
+
+            workload.add(x, y, z, pattern.getIndex(x, y, z));
+            return workload;
+        }
+
+        PackedBlockWorkload workload = new PackedBlockWorkload(world, palette,
+                applyPhysics, removeTileEntity, refresher, territory.getTerritoryBlocksCount());
+
+        if (pattern.isSingle()) {
+            territory.forEachBlock(workload::add);
         } else {
-            for (Block block : territory.getTerritoryBlocks()) {
-                BlockChanger.setBlock(block.getLocation(), blockData, applyPhysics, removeTileEntity);
-            }
+            territory.forEachBlock((x, y, z) -> workload.add(x, y, z, pattern.getIndex(x, y, z)));
         }
 
-        if (runnable != null)
-            runnable.run();
+        return workload;
+    }
+
+    private Workload wrapParallel(@NonNull PackedBlockWorkload workload) {
+        return parallel ? new ParallelSectionWorkload(workload) : workload;
     }
 
     @Override
     public void thenRun(@NonNull Runnable runnable) {
-        this.runnable = runnable;
+        this.callbacks.add(runnable);
     }
 
     @Override
     public long flush() {
-        System.gc();
-        return startTimeMillis > 0 ? System.currentTimeMillis() - startTimeMillis : -1L;
+        return startTimeMillis != null ? System.currentTimeMillis() - startTimeMillis : -1L;
     }
 }
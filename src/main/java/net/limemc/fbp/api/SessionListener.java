@@ -0,0 +1,24 @@
+package net.limemc.fbp.api;
+
+import lombok.NonNull;
+
+/**
+ * Получает показатели сессий, зарегистрированный через {@link SessionMetrics#addListener(SessionListener)}.
+ * Методы вызываются в потоке выполнения сессии, для асинхронных сессий - в основном потоке, поэтому
+ * должны быть быстрыми: тяжёлую обработку, например запись в базу, нужно переносить в другой поток.
+ */
+public interface SessionListener {
+
+    /**
+     * Вызывается после завершения каждого этапа сессии. Значения результата ещё не окончательные.
+     */
+    default void onStage(@NonNull SessionStage stage, @NonNull SessionResult result) {
+    }
+
+    /**
+     * Вызывается один раз после всех этапов.
+     *
+     * @param error Ошибка этапа или {@code null}, если сессия выполнена.
+     */
+    void onComplete(@NonNull SessionResult result, Throwable error);
+}
@@ -0,0 +1,246 @@
+package net.limemc.fbp.api;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.limemc.fbp.api.workload.WorkloadScheduler;
+import org.bukkit.Bukkit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Показатели всех сессий: слушатели {@link SessionListener} и сводные счётчики с момента запуска сервера.
+ * Счётчики обновляются один раз при завершении сессии и читаются из любого потока, в том числе через JMX
+ * после {@link #registerMBean()}. Показатели планировщика берутся из {@link WorkloadScheduler}.
+ */
+@UtilityClass
+public class SessionMetrics {
+    public final String OBJECT_NAME = "net.limemc.fbp:type=SessionMetrics";
+
+    private final List<SessionListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder sessions = new LongAdder();
+    private final LongAdder failedSessions = new LongAdder();
+    private final LongAdder writtenBlocks = new LongAdder();
+    private final LongAdder skippedBlocks = new LongAdder();
+    private final LongAdder sections = new LongAdder();
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder ticks = new LongAdder();
+    private final Map<SessionStage, LongAdder> stageNanos = createStageCounters();
+
+    private ObjectName registeredName;
+
+    public void addListener(@NonNull SessionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull SessionListener listener) {
+        listeners.remove(listener);
+    }
+
+    public long getSessions() {
+        return sessions.sum();
+    }
+
+    public long getFailedSessions() {
+        return failedSessions.sum();
+    }
+
+    public long getWrittenBlocks() {
+        return writtenBlocks.sum();
+    }
+
+    public long getSkippedBlocks() {
+        return skippedBlocks.sum();
+    }
+
+    public long getSections() {
+        return sections.sum();
+    }
+
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    public long getStageNanos(@NonNull SessionStage stage) {
+        return stageNanos.get(stage).sum();
+    }
+
+    /**
+     * Регистрирует сводные показатели в платформенном MBean-сервере под именем {@link #OBJECT_NAME}.
+     * Повторный вызов ничего не делает.
+     *
+     * @throws IllegalStateException если регистрация не удалась.
+     */
+    public synchronized void registerMBean() {
+        if (registeredName != null) {
+            return;
+        }
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+            registeredName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Снимает регистрацию MBean, например при выключении плагина.
+     */
+    public synchronized void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister " + OBJECT_NAME, e);
+        } finally {
+            registeredName = null;
+        }
+    }
+
+    void stageCompleted(SessionStage stage, SessionResult result) {
+        for (SessionListener listener : listeners) {
+            try {
+                listener.onStage(stage, result);
+            } catch (RuntimeException e) {
+                Bukkit.getLogger().log(Level.WARNING, "Session listener failed on stage " + stage, e);
+            }
+        }
+    }
+
+    void sessionCompleted(SessionResult result, Throwable error) {
+        sessions.increment();
+
+        if (error != null)
+            failedSessions.increment();
+
+        writtenBlocks.add(result.getWrittenBlocks());
+        skippedBlocks.add(result.getSkippedBlocks());
+        sections.add(result.getSections());
+        packets.add(result.getPackets());
+        bytes.add(result.getBytes());
+        ticks.add(result.getTicks());
+
+        for (SessionStage stage : SessionStage.values()) {
+            stageNanos.get(stage).add(result.getStageNanos(stage));
+        }
+
+        for (SessionListener listener : listeners) {
+            try {
+                listener.onComplete(result, error);
+            } catch (RuntimeException e) {
+                Bukkit.getLogger().log(Level.WARNING, "Session listener failed", e);
+            }
+        }
+    }
+
+    private Map<SessionStage, LongAdder> createStageCounters() {
+        Map<SessionStage, LongAdder> counters = new EnumMap<>(SessionStage.class);
+
+        for (SessionStage stage : SessionStage.values()) {
+            counters.put(stage, new LongAdder());
+        }
+
+        return counters;
+    }
+
+    private class Bean implements SessionMetricsMXBean {
+        @Override
+        public long getSessions() {
+            return SessionMetrics.getSessions();
+        }
+
+        @Override
+        public long getFailedSessions() {
+            return SessionMetrics.getFailedSessions();
+        }
+
+        @Override
+        public long getWrittenBlocks() {
+            return SessionMetrics.getWrittenBlocks();
+        }
+
+        @Override
+        public long getSkippedBlocks() {
+            return SessionMetrics.getSkippedBlocks();
+        }
+
+        @Override
+        public long getSections() {
+            return SessionMetrics.getSections();
+        }
+
+        @Override
+        public long getPackets() {
+            return SessionMetrics.getPackets();
+        }
+
+        @Override
+        public long getBytes() {
+            return SessionMetrics.getBytes();
+        }
+
+        @Override
+        public long getTicks() {
+            return SessionMetrics.getTicks();
+        }
+
+        @Override
+        public Map<String, Long> getStageNanos() {
+            Map<String, Long> nanos = new LinkedHashMap<>();
+
+            for (SessionStage stage : SessionStage.values()) {
+                nanos.put(stage.name(), SessionMetrics.getStageNanos(stage));
+            }
+
+            return nanos;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return WorkloadScheduler.getInstance().getQueueSize();
+        }
+
+        @Override
+        public double getMillisPerTick() {
+            return WorkloadScheduler.getInstance().getMillisPerTick();
+        }
+
+        @Override
+        public double getAverageTickMillis() {
+            return WorkloadScheduler.getInstance().getAverageTickMillis();
+        }
+
+        @Override
+        public long getLastTickBusyNanos() {
+            return WorkloadScheduler.getInstance().getLastTickBusyNanos();
+        }
+    }
+}
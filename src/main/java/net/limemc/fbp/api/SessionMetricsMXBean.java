@@ -0,0 +1,38 @@
+package net.limemc.fbp.api;
+
+import java.util.Map;
+
+/**
+ * Сводные показатели сессий и планировщика для JMX, см. {@link SessionMetrics#registerMBean()}.
+ */
+public interface SessionMetricsMXBean {
+
+    long getSessions();
+
+    long getFailedSessions();
+
+    long getWrittenBlocks();
+
+    long getSkippedBlocks();
+
+    long getSections();
+
+    long getPackets();
+
+    long getBytes();
+
+    long getTicks();
+
+    /**
+     * @return Суммарное время каждого этапа в наносекундах по названию этапа.
+     */
+    Map<String, Long> getStageNanos();
+
+    int getQueueSize();
+
+    double getMillisPerTick();
+
+    double getAverageTickMillis();
+
+    long getLastTickBusyNanos();
+}
@@ -0,0 +1,137 @@
+package net.limemc.fbp.api;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.workload.Workload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Последовательность этапов одной сессии в виде одной нагрузки. Этапы выполняются по очереди, время каждого
+ * записывается в {@link SessionResult}, а после последнего этапа или первой ошибки выполняются завершающие действия,
+ * результат передаётся в {@link SessionMetrics} и завершается {@link #getFuture()}. Ошибка этапа не выходит в планировщик: остальные этапы пропускаются,
+ * а будущее завершается с этой ошибкой.
+ */
+class SessionPipeline implements Workload {
+    private final List<SessionStage> stages = new ArrayList<>();
+    private final List<Workload> workloads = new ArrayList<>();
+    private final List<Runnable> finalizers = new ArrayList<>();
+
+    @Getter
+    private final SessionResult result;
+    @Getter
+    private final CompletableFuture<SessionResult> future = new CompletableFuture<>();
+
+    private int current;
+
+    SessionPipeline(@NonNull SessionResult result) {
+        this.result = result;
+    }
+
+    void add(@NonNull SessionStage stage, @NonNull Workload workload) {
+        this.stages.add(stage);
+        this.workloads.add(workload);
+    }
+
+    /**
+     * Добавляет действие, которое выполняется после всех этапов, даже если один из них завершился ошибкой.
+     */
+    void addFinalizer(@NonNull Runnable runnable) {
+        this.finalizers.add(runnable);
+    }
+
+    /**
+     * Выполняет все этапы в текущем потоке, вызывая {@link Workload#compute()} каждого, в том числе
+     * синхронную загрузку чанков. Ошибка этапа передаётся в будущее и выбрасывается дальше.
+     */
+    @Override
+    public void compute() {
+        if (this.future.isDone()) {
+            return;
+        }
+
+        for (; this.current < this.workloads.size(); this.current++) {
+            SessionStage stage = this.stages.get(this.current);
+            long start = System.nanoTime();
+
+            try {
+                this.workloads.get(this.current).compute();
+            } catch (RuntimeException e) {
+                this.result.addStageNanos(stage, System.nanoTime() - start);
+                this.finish(e);
+                throw e;
+            }
+
+            this.result.addStageNanos(stage, System.nanoTime() - start);
+            SessionMetrics.stageCompleted(stage, this.result);
+        }
+
+        this.finish(null);
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        if (this.future.isDone()) {
+            return true;
+        }
+
+        this.result.addTick();
+
+        while (this.current < this.workloads.size()) {
+            SessionStage stage = this.stages.get(this.current);
+            long start = System.nanoTime();
+            boolean done;
+
+            try {
+                done = this.workloads.get(this.current).compute(stopTime);
+            } catch (RuntimeException e) {
+                this.result.addStageNanos(stage, System.nanoTime() - start);
+                this.finish(e);
+                return true;
+            }
+
+            this.result.addStageNanos(stage, System.nanoTime() - start);
+
+            if (!done) {
+                return false;
+            }
+
+            this.current++;
+            SessionMetrics.stageCompleted(stage, this.result);
+
+            if (this.current < this.workloads.size() && System.nanoTime() > stopTime) {
+                return false;
+            }
+        }
+
+        this.finish(null);
+        return true;
+    }
+
+    private void finish(Throwable error) {
+        this.current = this.workloads.size();
+
+        for (Runnable finalizer : this.finalizers) {
+            try {
+                finalizer.run();
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+
+        this.result.complete();
+        SessionMetrics.sessionCompleted(this.result, error);
+
+        if (error != null) {
+            this.future.completeExceptionally(error);
+        } else {
+            this.future.complete(this.result);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.limemc.fbp.api;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.bukkit.World;
+
+/**
+ * Результат одного {@link FastSession#apply()} или {@link FastSession#restore()}: время работы каждого этапа,
+ * количество обработанных блоков, секций и чанков и отправленных пакетов. Заполняется по ходу выполнения
+ * и отдаётся, когда сессия завершена. Те же значения получают слушатели {@link SessionMetrics}.
+ */
+@Getter
+@Setter(AccessLevel.PACKAGE)
+public class SessionResult {
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final long[] stageNanos = new long[SessionStage.values().length];
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final long startNanos = System.nanoTime();
+
+    @Setter(AccessLevel.NONE)
+    private final World world;
+
+    /**
+     * Количество позиций в очереди записи.
+     */
+    private long blocks;
+
+    /**
+     * Количество позиций, пропущенных из-за совпадения с целевым блоком.
+     */
+    private long skippedBlocks;
+
+    /**
+     * Количество различных секций, в которые записывались блоки.
+     */
+    private int sections;
+
+    /**
+     * Количество чанков, загруженных тикетами перед записью.
+     */
+    private int preloadedChunks;
+
+    /**
+     * Количество пакетов изменений блоков, по одному на каждого получателя.
+     */
+    private long packets;
+
+    /**
+     * Оценка размера пакетов изменений блоков в байтах без сжатия, см. {@link net.limemc.fbp.api.refresh.ChunkRefresher#getSentBytes()}.
+     */
+    private long bytes;
+
+    /**
+     * Количество чанков, отправленных целиком вместо пакетов изменений блоков.
+     */
+    private int resentChunks;
+
+    /**
+     * Количество тиков планировщика, в которые выполнялась сессия, или {@code 0} для синхронной сессии.
+     */
+    private int ticks;
+
+    /**
+     * Количество нагрузок в очереди планировщика в момент постановки сессии.
+     */
+    private int queueDepth;
+
+    /**
+     * Время от вызова {@link FastSession#apply()} до завершения в наносекундах, включая ожидание тиков.
+     */
+    private long elapsedNanos;
+
+    SessionResult(@NonNull World world) {
+        this.world = world;
+    }
+
+    /**
+     * @return Количество позиций, действительно записанных в секции.
+     */
+    public long getWrittenBlocks() {
+        return this.blocks - this.skippedBlocks;
+    }
+
+    /**
+     * @return Время выполнения этапа в наносекундах. Ожидание следующего тика не учитывается.
+     */
+    public long getStageNanos(@NonNull SessionStage stage) {
+        return this.stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * @return Суммарное время всех этапов в наносекундах.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+
+        for (long nanos : this.stageNanos) {
+            total += nanos;
+        }
+
+        return total;
+    }
+
+    void addStageNanos(SessionStage stage, long nanos) {
+        this.stageNanos[stage.ordinal()] += nanos;
+    }
+
+    void addTick() {
+        this.ticks++;
+    }
+
+    void complete() {
+        this.elapsedNanos = System.nanoTime() - this.startNanos;
+    }
+}
@@ -0,0 +1,35 @@
+package net.limemc.fbp.api;
+
+/**
+ * Этапы применения сессии в порядке выполнения. Каждый этап начинается после завершения предыдущего,
+ * а этапы разных сессий в общем {@link net.limemc.fbp.api.workload.WorkloadScheduler} идут одновременно:
+ * пока одна сессия пересчитывает освещение, другая уже пишет блоки.
+ */
+public enum SessionStage {
+    /**
+     * Раскладка территории или шаблона в очередь записи. Выполняется сразу в {@link FastSession#apply()}.
+     */
+    RESOLVE,
+    /**
+     * Загрузка чанков тикетами, если включена {@link FastSession#setPreloadChunks(boolean)}.
+     */
+    PRELOAD,
+    /**
+     * Запись блоков в секции чанков.
+     */
+    WRITE,
+    /**
+     * Обновление карт высот и счётчиков блоков и отправка оставшихся изменений игрокам. Идёт до освещения,
+     * потому что движок освещения определяет пустые секции по счётчикам блоков.
+     */
+    REFRESH,
+    /**
+     * Передача изменённых секций движку освещения, если не включена {@link FastSession#setSkipLighting(boolean)}.
+     */
+    RELIGHT,
+    /**
+     * Действия {@link FastSession#thenRun(Runnable)}. Тикеты загрузки снимаются после этого этапа,
+     * даже если один из предыдущих завершился ошибкой.
+     */
+    COMPLETE
+}
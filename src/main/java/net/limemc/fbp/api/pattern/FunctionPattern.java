@@ -0,0 +1,41 @@
+package net.limemc.fbp.api.pattern;
+
+import lombok.NonNull;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Шаблон, в котором индекс блока вычисляет пользовательская функция координат.
+ * Функция вызывается для каждого блока, поэтому не должна создавать объектов и обращаться к миру.
+ */
+public class FunctionPattern implements Pattern {
+    private final BlockData[] palette;
+    private final IndexFunction function;
+
+    /**
+     * @param function Функция, возвращающая индекс в {@code palette}.
+     * @param palette  Блоки, из которых выбирает функция.
+     */
+    public FunctionPattern(@NonNull IndexFunction function, @NonNull BlockData... palette) {
+        if (palette.length == 0) {
+            throw new IllegalArgumentException("FunctionPattern requires at least one block");
+        }
+
+        this.palette = palette.clone();
+        this.function = function;
+    }
+
+    @Override
+    public BlockData[] getPalette() {
+        return this.palette;
+    }
+
+    @Override
+    public int getIndex(int x, int y, int z) {
+        return this.function.apply(x, y, z);
+    }
+
+    @FunctionalInterface
+    public interface IndexFunction {
+        int apply(int x, int y, int z);
+    }
+}
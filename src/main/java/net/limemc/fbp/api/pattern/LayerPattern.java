@@ -0,0 +1,86 @@
+package net.limemc.fbp.api.pattern;
+
+import lombok.NonNull;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шаблон по слоям высоты: каждому диапазону Y назначается свой блок, остальные высоты получают блок по умолчанию.
+ * Слои раскладываются в массив индексов по Y, так что выбор блока - одно обращение к массиву.
+ * При пересечении слоёв побеждает добавленный позже.
+ */
+public class LayerPattern implements Pattern {
+    private final BlockData[] palette;
+    private final short[] layers;
+    private final int minY;
+
+    private LayerPattern(BlockData[] palette, short[] layers, int minY) {
+        this.palette = palette;
+        this.layers = layers;
+        this.minY = minY;
+    }
+
+    /**
+     * @param fallback Блок для высот, не попавших ни в один слой.
+     */
+    public static Builder builder(@NonNull BlockData fallback) {
+        return new Builder(fallback);
+    }
+
+    @Override
+    public BlockData[] getPalette() {
+        return this.palette;
+    }
+
+    @Override
+    public int getIndex(int x, int y, int z) {
+        int index = y - this.minY;
+        return index >= 0 && index < this.layers.length ? this.layers[index] : 0;
+    }
+
+    public static class Builder {
+        private final List<BlockData> blocks = new ArrayList<>();
+        private final List<int[]> ranges = new ArrayList<>();
+
+        private Builder(BlockData fallback) {
+            this.blocks.add(fallback);
+        }
+
+        /**
+         * Добавляет слой от {@code fromY} до {@code toY} включительно.
+         */
+        public Builder layer(int fromY, int toY, @NonNull BlockData blockData) {
+            this.blocks.add(blockData);
+            this.ranges.add(new int[]{Math.min(fromY, toY), Math.max(fromY, toY)});
+            return this;
+        }
+
+        public LayerPattern build() {
+            if (this.ranges.isEmpty()) {
+                return new LayerPattern(this.blocks.toArray(new BlockData[0]), new short[0], 0);
+            }
+
+            int minY = Integer.MAX_VALUE;
+            int maxY = Integer.MIN_VALUE;
+
+            for (int[] range : this.ranges) {
+                minY = Math.min(minY, range[0]);
+                maxY = Math.max(maxY, range[1]);
+            }
+
+            short[] layers = new short[maxY - minY + 1];
+
+            for (int i = 0; i < this.ranges.size(); i++) {
+                int[] range = this.ranges.get(i);
+
+                for (int y = range[0]; y <= range[1]; y++) {
+                    layers[y - minY] = (short) (i + 1);
+                }
+            }
+
+            return new LayerPattern(this.blocks.toArray(new BlockData[0]), layers, minY);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package net.limemc.fbp.api.pattern;
+
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Шаблон заполнения: сопоставляет координатам блок из заранее заданной палитры.
+ * Палитра переводится в {@code IBlockData} один раз перед применением сессии, а для каждого блока
+ * вычисляется только индекс, поэтому реализации не должны создавать объектов в {@link #getIndex(int, int, int)}
+ * и должны быть безопасны для вызова из нескольких потоков.
+ */
+public interface Pattern {
+
+    /**
+     * @return Блоки, на которые ссылаются индексы шаблона. Не должна изменяться после создания.
+     */
+    BlockData[] getPalette();
+
+    /**
+     * @return Индекс блока в {@link #getPalette()} для указанных координат.
+     */
+    int getIndex(int x, int y, int z);
+
+    /**
+     * @return {@code true}, если шаблон всегда возвращает один и тот же блок.
+     */
+    default boolean isSingle() {
+        return getPalette().length == 1;
+    }
+}
@@ -0,0 +1,25 @@
+package net.limemc.fbp.api.pattern;
+
+import lombok.NonNull;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Шаблон из одного блока.
+ */
+public class SinglePattern implements Pattern {
+    private final BlockData[] palette;
+
+    public SinglePattern(@NonNull BlockData blockData) {
+        this.palette = new BlockData[]{blockData};
+    }
+
+    @Override
+    public BlockData[] getPalette() {
+        return this.palette;
+    }
+
+    @Override
+    public int getIndex(int x, int y, int z) {
+        return 0;
+    }
+}
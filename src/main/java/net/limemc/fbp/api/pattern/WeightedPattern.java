@@ -0,0 +1,101 @@
+package net.limemc.fbp.api.pattern;
+
+import lombok.NonNull;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Случайная смесь блоков с заданными весами, например 70% камня и 30% андезита.
+ * Вероятности заранее раскладываются в таблицу из {@link #TABLE_SIZE} ячеек, а блок выбирается
+ * по хешу координат и зерна. Поэтому результат детерминирован: одна и та же точка с тем же зерном
+ * всегда получает один и тот же блок, сколько бы раз сессия ни применялась.
+ */
+public class WeightedPattern implements Pattern {
+    private static final int TABLE_BITS = 12;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+
+    private final BlockData[] palette;
+    private final short[] table;
+    private final long seed;
+
+    private WeightedPattern(BlockData[] palette, short[] table, long seed) {
+        this.palette = palette;
+        this.table = table;
+        this.seed = seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public BlockData[] getPalette() {
+        return this.palette;
+    }
+
+    @Override
+    public int getIndex(int x, int y, int z) {
+        return this.table[(int) (hash(x, y, z, this.seed) >>> (64 - TABLE_BITS))];
+    }
+
+    private static long hash(int x, int y, int z, long seed) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL) ^ (z * 0x165667B19E3779F9L);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    public static class Builder {
+        private final List<BlockData> blocks = new ArrayList<>();
+        private final List<Double> weights = new ArrayList<>();
+        private long seed = System.nanoTime();
+
+        private Builder() {
+        }
+
+        public Builder add(@NonNull BlockData blockData, double weight) {
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Weight must be positive: " + weight);
+            }
+
+            this.blocks.add(blockData);
+            this.weights.add(weight);
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public WeightedPattern build() {
+            if (this.blocks.isEmpty()) {
+                throw new IllegalStateException("WeightedPattern requires at least one block");
+            }
+
+            double total = 0;
+            for (double weight : this.weights) {
+                total += weight;
+            }
+
+            short[] table = new short[TABLE_SIZE];
+            double accumulated = 0;
+            int from = 0;
+
+            for (int i = 0; i < this.blocks.size(); i++) {
+                accumulated += this.weights.get(i);
+                int to = i == this.blocks.size() - 1 ? TABLE_SIZE : (int) Math.round(accumulated / total * TABLE_SIZE);
+
+                for (int cell = from; cell < to; cell++) {
+                    table[cell] = (short) i;
+                }
+
+                from = Math.max(from, to);
+            }
+
+            return new WeightedPattern(this.blocks.toArray(new BlockData[0]), table, this.seed);
+        }
+    }
+}
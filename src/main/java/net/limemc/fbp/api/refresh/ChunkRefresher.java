@@ -0,0 +1,263 @@
+package net.limemc.fbp.api.refresh;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.minecraft.core.SectionPosition;
+import net.minecraft.network.protocol.game.PacketPlayOutMultiBlockChange;
+import net.minecraft.server.level.WorldServer;
+import net.minecraft.world.level.chunk.ChunkSection;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.v1_20_R3.CraftWorld;
+
+import java.util.Arrays;
+
+/**
+ * Накапливает изменённые позиции по секциям чанков и отправляет их игрокам пачкой.
+ * Перед отправкой обновляет служебное состояние затронутых чанков, которое прямая запись в палитры не трогает:
+ * карты высот и признак несохранённого чанка.
+ * На каждую секцию уходит один {@link PacketPlayOutMultiBlockChange}, а если секция изменена
+ * больше чем на {@link #FULL_CHUNK_THRESHOLD} блоков - чанк отправляется целиком.
+ * Получатели выбираются через {@link RefreshTargets}: только игроки этого мира, которые видят чанк.
+ * Все методы должны вызываться из основного потока.
+ */
+public class ChunkRefresher {
+    public static final int FULL_CHUNK_THRESHOLD = 2048;
+
+    /**
+     * Оценка размера записи одного блока в {@link PacketPlayOutMultiBlockChange}: VarLong из номера состояния
+     * и позиции занимает 3 байта для распространённых блоков и 4 для остальных, поэтому берётся оценка сверху.
+     */
+    private static final int ESTIMATED_BLOCK_BYTES = 4;
+
+    @Getter
+    private final World world;
+    private final int minSectionY;
+
+    private final Long2ObjectLinkedOpenHashMap<ShortOpenHashSet> dirtySections = new Long2ObjectLinkedOpenHashMap<>();
+
+    private long lastSectionKey;
+    private ShortOpenHashSet lastSection;
+
+    /**
+     * Наибольшая записанная координата Y по столбцам каждого затронутого чанка.
+     */
+    private final Long2ObjectOpenHashMap<int[]> columnTops = new Long2ObjectOpenHashMap<>();
+
+    private long lastChunkKey;
+    private int[] lastColumnTops;
+
+    /**
+     * Получает те же позиции для пересчёта освещения или {@code null}, если освещение не пересчитывается.
+     * В отличие от очереди отправки, очередь освещения не очищается при {@link #flush()}.
+     */
+    @Getter
+    @Setter
+    private ChunkRelighter relighter;
+
+    /**
+     * Секции, в которые хотя бы раз добавлялись позиции, за всё время жизни объекта.
+     */
+    private final LongOpenHashSet touchedSections = new LongOpenHashSet();
+
+    /**
+     * Количество отправленных пакетов изменений блоков, по одному на каждого получателя.
+     */
+    @Getter
+    private long sentPackets;
+
+    /**
+     * Оценка размера отправленных пакетов изменений блоков в байтах без сжатия: позиция секции, длина списка
+     * и по {@link #ESTIMATED_BLOCK_BYTES} на блок. Точный размер потребовал бы повторной сериализации пакетов.
+     */
+    @Getter
+    private long sentBytes;
+
+    /**
+     * Количество чанков, отправленных целиком через {@link World#refreshChunk(int, int)}.
+     */
+    @Getter
+    private int resentChunks;
+
+    public ChunkRefresher(@NonNull World world) {
+        this.world = world;
+        this.minSectionY = world.getMinHeight() >> 4;
+    }
+
+    public void add(int x, int y, int z) {
+        this.getDirtyPositions(x >> 4, y >> 4, z >> 4).add(PackedPositions.pack(x, y, z));
+
+        int[] tops = this.getColumnTops(x >> 4, z >> 4);
+        int column = (z & 15) << 4 | x & 15;
+        tops[column] = Math.max(tops[column], y);
+
+        if (this.relighter != null)
+            this.relighter.add(x, y, z);
+    }
+
+    /**
+     * Добавляет отрезок упакованных позиций одной секции.
+     */
+    public void add(int sectionX, int sectionY, int sectionZ, @NonNull short[] positions, int from, int to) {
+        ShortOpenHashSet dirty = this.getDirtyPositions(sectionX, sectionY, sectionZ);
+        int[] tops = this.getColumnTops(sectionX, sectionZ);
+        int minY = sectionY << 4;
+
+        for (int i = from; i < to; i++) {
+            short position = positions[i];
+            int column = PackedPositions.unpackZ(position) << 4 | PackedPositions.unpackX(position);
+
+            dirty.add(position);
+            tops[column] = Math.max(tops[column], minY | PackedPositions.unpackY(position));
+        }
+
+        if (this.relighter != null)
+            this.relighter.add(sectionX, sectionY, sectionZ, positions, from, to);
+    }
+
+    public boolean isEmpty() {
+        return this.dirtySections.isEmpty();
+    }
+
+    /**
+     * @return Количество различных секций, в которые добавлялись позиции.
+     */
+    public int getSectionsCount() {
+        return this.touchedSections.size();
+    }
+
+    /**
+     * Отправляет все накопленные изменения и очищает очередь.
+     */
+    public void flush() {
+        if (this.dirtySections.isEmpty()) {
+            return;
+        }
+
+        this.updateChunks();
+
+        RefreshTargets targets = RefreshTargets.collect(this.world);
+
+        if (targets.isEmpty()) {
+            this.clear();
+            return;
+        }
+
+        WorldServer worldServer = ((CraftWorld) this.world).getHandle();
+        LongSet fullChunks = new LongOpenHashSet();
+
+        for (Long2ObjectLinkedOpenHashMap.Entry<ShortOpenHashSet> entry : this.dirtySections.long2ObjectEntrySet()) {
+            if (entry.getValue().size() >= FULL_CHUNK_THRESHOLD) {
+                long key = entry.getLongKey();
+                fullChunks.add(PackedPositions.chunkKey(PackedPositions.sectionX(key), PackedPositions.sectionZ(key)));
+            }
+        }
+
+        for (Long2ObjectLinkedOpenHashMap.Entry<ShortOpenHashSet> entry : this.dirtySections.long2ObjectEntrySet()) {
+            long key = entry.getLongKey();
+            int sectionX = PackedPositions.sectionX(key);
+            int sectionY = PackedPositions.sectionY(key);
+            int sectionZ = PackedPositions.sectionZ(key);
+
+            if (fullChunks.contains(PackedPositions.chunkKey(sectionX, sectionZ))
+                    || !targets.isObserved(sectionX, sectionZ)
+                    || !this.world.isChunkLoaded(sectionX, sectionZ)) {
+                continue;
+            }
+
+            ChunkSection section = worldServer.d(sectionX, sectionZ).d()[sectionY - this.minSectionY];
+            int blocks = entry.getValue().size();
+            int sent = targets.send(sectionX, sectionZ, new PacketPlayOutMultiBlockChange(
+                    SectionPosition.a(sectionX, sectionY, sectionZ), entry.getValue(), section
+            ));
+
+            this.sentPackets += sent;
+            this.sentBytes += (long) sent * (Long.BYTES + varIntSize(blocks) + blocks * ESTIMATED_BLOCK_BYTES);
+        }
+
+        fullChunks.forEach(key -> {
+            int chunkX = (int) key;
+            int chunkZ = (int) (key >> 32);
+
+            // refreshChunk сам отправляет чанк только тем, кто его отслеживает
+            if (targets.isObserved(chunkX, chunkZ) && this.world.isChunkLoaded(chunkX, chunkZ)) {
+                this.world.refreshChunk(chunkX, chunkZ);
+                this.resentChunks++;
+            }
+        });
+
+        this.clear();
+    }
+
+    /**
+     * Обновляет карты высот каждого чанка один раз за отправку, см.
+     * {@link BatchBlockChanger#updateChunk(World, int, int, int[])}. Счётчики блоков секций уже обновлены при записи.
+     */
+    private void updateChunks() {
+        for (Long2ObjectMap.Entry<int[]> entry : this.columnTops.long2ObjectEntrySet()) {
+            int chunkX = (int) entry.getLongKey();
+            int chunkZ = (int) (entry.getLongKey() >> 32);
+
+            if (this.world.isChunkLoaded(chunkX, chunkZ)) {
+                BatchBlockChanger.updateChunk(this.world, chunkX, chunkZ, entry.getValue());
+            }
+        }
+    }
+
+    private void clear() {
+        this.dirtySections.clear();
+        this.lastSection = null;
+        this.columnTops.clear();
+        this.lastColumnTops = null;
+    }
+
+    private static int varIntSize(int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    private int[] getColumnTops(int chunkX, int chunkZ) {
+        long key = PackedPositions.chunkKey(chunkX, chunkZ);
+
+        if (this.lastColumnTops != null && this.lastChunkKey == key) {
+            return this.lastColumnTops;
+        }
+
+        int[] tops = this.columnTops.get(key);
+
+        if (tops == null) {
+            tops = new int[16 * 16];
+            Arrays.fill(tops, BatchBlockChanger.NO_COLUMN);
+            this.columnTops.put(key, tops);
+        }
+
+        this.lastChunkKey = key;
+        return this.lastColumnTops = tops;
+    }
+
+    private ShortOpenHashSet getDirtyPositions(int sectionX, int sectionY, int sectionZ) {
+        long key = PackedPositions.sectionKey(sectionX, sectionY, sectionZ);
+
+        if (this.lastSection != null && this.lastSectionKey == key) {
+            return this.lastSection;
+        }
+
+        ShortOpenHashSet dirty = this.dirtySections.get(key);
+
+        if (dirty == null) {
+            dirty = new ShortOpenHashSet();
+            this.dirtySections.put(key, dirty);
+            this.touchedSections.add(key);
+        }
+
+        this.lastSectionKey = key;
+        return this.lastSection = dirty;
+    }
+}
@@ -0,0 +1,151 @@
+package net.limemc.fbp.api.refresh;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.minecraft.core.BlockPosition;
+import net.minecraft.core.SectionPosition;
+import net.minecraft.server.level.LightEngineThreaded;
+import net.minecraft.server.level.WorldServer;
+import net.minecraft.world.level.chunk.ChunkSection;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.v1_20_R3.CraftWorld;
+
+/**
+ * Пересчитывает освещение после прямой записи в палитры секций, которая обходит движок освещения.
+ * <p>
+ * Изменённые позиции накапливаются по секциям в битовых масках по 512 байт на секцию. После записи
+ * {@link #relight(long)} отдаёт секции движку освещения по одной в пределах бюджета тика: для секции один раз
+ * обновляется признак пустоты, чтобы небесный свет учитывал заполненные или опустевшие секции, и все её изменённые
+ * позиции ставятся в очередь проверки. Сам пересчёт идёт в потоке освещения сервера, а изменения освещения
+ * сервер отправляет игрокам сам. Все методы должны вызываться из основного потока.
+ * <p>
+ * Проверка каждой изменённой позиции - то же, что делает сервер при обычной установке блока, и только она
+ * убирает устаревший свет: проход освещения по чанку лишь распространяет свет от источников, поэтому
+ * после удаления источника или перекрытия неба свет остался бы прежним. Цена - одна задача движка освещения
+ * на изменённый блок, поэтому для очень больших изменений освещение лучше отключить через
+ * {@code skipLighting(true)} и пересчитать другим способом.
+ */
+public class ChunkRelighter {
+    private static final int WORDS_PER_SECTION = 16 * 16 * 16 / Long.SIZE;
+
+    @Getter
+    private final World world;
+    private final int minSectionY;
+
+    private final Long2ObjectLinkedOpenHashMap<long[]> dirtySections = new Long2ObjectLinkedOpenHashMap<>();
+
+    private long lastSectionKey;
+    private long[] lastSection;
+
+    public ChunkRelighter(@NonNull World world) {
+        this.world = world;
+        this.minSectionY = world.getMinHeight() >> 4;
+    }
+
+    public void add(int x, int y, int z) {
+        mark(this.getDirtyPositions(x >> 4, y >> 4, z >> 4), PackedPositions.pack(x, y, z));
+    }
+
+    /**
+     * Добавляет отрезок упакованных позиций одной секции.
+     */
+    public void add(int sectionX, int sectionY, int sectionZ, @NonNull short[] positions, int from, int to) {
+        long[] dirty = this.getDirtyPositions(sectionX, sectionY, sectionZ);
+
+        for (int i = from; i < to; i++) {
+            mark(dirty, positions[i]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.dirtySections.isEmpty();
+    }
+
+    /**
+     * @return Количество секций, ожидающих пересчёта.
+     */
+    public int size() {
+        return this.dirtySections.size();
+    }
+
+    /**
+     * Отдаёт секции движку освещения в порядке записи, пока не наступит {@code stopTime}.
+     * Секции выгруженных чанков пропускаются: сервер пересчитает их освещение при загрузке.
+     *
+     * @return {@code true}, если очередь пуста.
+     */
+    public boolean relight(long stopTime) {
+        if (this.dirtySections.isEmpty()) {
+            return true;
+        }
+
+        WorldServer worldServer = ((CraftWorld) this.world).getHandle();
+        LightEngineThreaded lightEngine = worldServer.l().a();
+
+        while (!this.dirtySections.isEmpty() && System.nanoTime() <= stopTime) {
+            long key = this.dirtySections.firstLongKey();
+            long[] dirty = this.dirtySections.removeFirst();
+
+            if (dirty == this.lastSection) {
+                this.lastSection = null;
+            }
+
+            int sectionX = PackedPositions.sectionX(key);
+            int sectionY = PackedPositions.sectionY(key);
+            int sectionZ = PackedPositions.sectionZ(key);
+
+            if (!this.world.isChunkLoaded(sectionX, sectionZ)) {
+                continue;
+            }
+
+            ChunkSection section = worldServer.d(sectionX, sectionZ).d()[sectionY - this.minSectionY];
+            lightEngine.a(SectionPosition.a(sectionX, sectionY, sectionZ), section.c());
+
+            int minX = sectionX << 4, minY = sectionY << 4, minZ = sectionZ << 4;
+
+            for (int word = 0; word < WORDS_PER_SECTION; word++) {
+                long bits = dirty[word];
+
+                while (bits != 0) {
+                    short position = (short) (word << 6 | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+
+                    lightEngine.a(new BlockPosition(minX | PackedPositions.unpackX(position),
+                            minY | PackedPositions.unpackY(position), minZ | PackedPositions.unpackZ(position)));
+                }
+            }
+        }
+
+        return this.dirtySections.isEmpty();
+    }
+
+    public void clear() {
+        this.dirtySections.clear();
+        this.lastSection = null;
+    }
+
+    private static void mark(long[] dirty, short position) {
+        int index = position & 0xFFF;
+        dirty[index >>> 6] |= 1L << index;
+    }
+
+    private long[] getDirtyPositions(int sectionX, int sectionY, int sectionZ) {
+        long key = PackedPositions.sectionKey(sectionX, sectionY, sectionZ);
+
+        if (this.lastSection != null && this.lastSectionKey == key) {
+            return this.lastSection;
+        }
+
+        long[] dirty = this.dirtySections.get(key);
+
+        if (dirty == null) {
+            dirty = new long[WORDS_PER_SECTION];
+            this.dirtySections.put(key, dirty);
+        }
+
+        this.lastSectionKey = key;
+        return this.lastSection = dirty;
+    }
+}
@@ -0,0 +1,88 @@
+package net.limemc.fbp.api.refresh;
+
+import lombok.NonNull;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.server.network.PlayerConnection;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.v1_20_R3.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/**
+ * Снимок игроков мира, которым нужно отправлять изменения блоков.
+ * Пакет получает только тот, у кого изменённый чанк находится в пределах дальности прорисовки этого мира.
+ * Игроки, подошедшие позже, получат чанк обычной загрузкой сервера - в нём уже будут новые блоки,
+ * поэтому отдельно им ничего не отправляется.
+ */
+public class RefreshTargets {
+    private final PlayerConnection[] connections;
+    private final int[] chunkX;
+    private final int[] chunkZ;
+    private final int range;
+
+    private RefreshTargets(int size, int range) {
+        this.connections = new PlayerConnection[size];
+        this.chunkX = new int[size];
+        this.chunkZ = new int[size];
+        this.range = range;
+    }
+
+    /**
+     * Собирает игроков мира и их текущие чанки.
+     *
+     * @param world Мир, в котором изменялись блоки.
+     */
+    public static RefreshTargets collect(@NonNull World world) {
+        List<Player> players = world.getPlayers();
+        // Сервер отправляет чанки в пределах view-distance мира и ещё одного кольца вокруг
+        RefreshTargets targets = new RefreshTargets(players.size(), world.getViewDistance() + 1);
+
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            Location location = player.getLocation();
+
+            targets.connections[i] = ((CraftPlayer) player).getHandle().c;
+            targets.chunkX[i] = location.getBlockX() >> 4;
+            targets.chunkZ[i] = location.getBlockZ() >> 4;
+        }
+
+        return targets;
+    }
+
+    public boolean isEmpty() {
+        return this.connections.length == 0;
+    }
+
+    /**
+     * Отправляет пакет всем игрокам, у которых указанный чанк находится в пределах видимости.
+     *
+     * @return Количество игроков, получивших пакет.
+     */
+    public int send(int chunkX, int chunkZ, @NonNull Packet<?> packet) {
+        int sent = 0;
+
+        for (int i = 0; i < this.connections.length; i++) {
+            if (Math.abs(this.chunkX[i] - chunkX) <= this.range && Math.abs(this.chunkZ[i] - chunkZ) <= this.range) {
+                this.connections[i].a(packet);
+                sent++;
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     * Проверяет, видит ли указанный чанк хотя бы один игрок.
+     */
+    public boolean isObserved(int chunkX, int chunkZ) {
+        for (int i = 0; i < this.connections.length; i++) {
+            if (Math.abs(this.chunkX[i] - chunkX) <= this.range && Math.abs(this.chunkZ[i] - chunkZ) <= this.range) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,9 @@
+package net.limemc.fbp.api.region;
+
+/**
+ * Получает координаты блоков при обходе территории без создания объектов на каждый блок.
+ */
+@FunctionalInterface
+public interface BlockVisitor {
+    void visit(int x, int y, int z);
+}
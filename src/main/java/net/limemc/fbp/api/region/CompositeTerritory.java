@@ -0,0 +1,135 @@
+package net.limemc.fbp.api.region;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.region.types.CompositeShape;
+import net.limemc.fbp.api.region.types.SpanShape;
+import net.limemc.fbp.api.region.types.SpanTerritory;
+import org.bukkit.World;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Территория, составленная из других территорий операцией над множествами, например стены куба
+ * ({@code difference(outer, inner)}) или {@code intersection(cylinder, cube)}. Принимается сессией как обычная
+ * {@link Territory}, поэтому сложная форма ставится за один проход. Составляющие могут сами быть составными.
+ * <p>
+ * Принадлежность, обход и покрытие чанков вычисляются по секциям: секции, которые целиком внутри
+ * или снаружи всех составляющих, не проверяются поблочно.
+ * <p>
+ * Составная территория подписывается на изменения составляющих, поэтому они удерживают её в памяти и
+ * перестраивают при каждом изменении. Ненужную составную территорию нужно закрыть через {@link #close()}.
+ */
+public class CompositeTerritory extends Territory implements AutoCloseable {
+    @Getter
+    private final CompositeShape.Operation operation;
+    private final Territory[] territories;
+    private final Consumer<Territory> listener = changed -> {
+        this.recompile();
+        this.notifyChanged();
+    };
+
+    private CompositeTerritory(@NonNull CompositeShape.Operation operation, @NonNull Territory... territories) {
+        super();
+
+        if (territories.length == 0) {
+            throw new IllegalArgumentException("Composite territory needs at least one territory");
+        }
+
+        World world = territories[0].getWorld();
+
+        for (Territory territory : territories) {
+            if (!world.equals(territory.getWorld())) {
+                throw new IllegalArgumentException("All territories must be in the same world");
+            }
+        }
+
+        this.operation = operation;
+        this.territories = territories.clone();
+
+        for (Territory territory : this.territories) {
+            territory.addChangeListener(this.listener);
+        }
+
+        this.recompile();
+    }
+
+    /**
+     * Блоки, входящие хотя бы в одну из территорий.
+     */
+    public static CompositeTerritory union(@NonNull Territory... territories) {
+        return new CompositeTerritory(CompositeShape.Operation.UNION, territories);
+    }
+
+    /**
+     * Блоки, входящие во все территории.
+     */
+    public static CompositeTerritory intersection(@NonNull Territory... territories) {
+        return new CompositeTerritory(CompositeShape.Operation.INTERSECTION, territories);
+    }
+
+    /**
+     * Блоки территории {@code base}, не входящие ни в одну из {@code subtracted}.
+     */
+    public static CompositeTerritory difference(@NonNull Territory base, @NonNull Territory... subtracted) {
+        Territory[] territories = new Territory[subtracted.length + 1];
+
+        territories[0] = base;
+        System.arraycopy(subtracted, 0, territories, 1, subtracted.length);
+
+        return new CompositeTerritory(CompositeShape.Operation.DIFFERENCE, territories);
+    }
+
+    /**
+     * Отписывается от изменений составляющих. После закрытия геометрия больше не перестраивается
+     * и остаётся такой, какой была в момент закрытия.
+     */
+    @Override
+    public void close() {
+        for (Territory territory : this.territories) {
+            territory.removeChangeListener(this.listener);
+        }
+    }
+
+    public List<Territory> getTerritories() {
+        return List.of(this.territories);
+    }
+
+    /**
+     * Геометрия собирается из уже скомпилированных геометрий составляющих и перестраивается при изменении
+     * любой из них, после чего вызываются слушатели изменений составной территории.
+     * Составляющая с недостаточным количеством точек считается пустой.
+     */
+    @Override
+    protected SpanShape compile() {
+        SpanShape[] shapes = new SpanShape[this.territories.length];
+
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = this.territories[i].getGeometry().getShape();
+        }
+
+        return new CompositeShape(this.operation, shapes);
+    }
+
+    /**
+     * Точки составной территории задаются её составляющими.
+     */
+    @Override
+    public void setPoints(Point... points) {
+        throw new UnsupportedOperationException("Composite territory has no points, change its territories instead");
+    }
+
+    /**
+     * Обход идёт по секциям: секции целиком внутри или снаружи не проверяются поблочно.
+     */
+    @Override
+    public void forEachBlock(@NonNull BlockVisitor visitor) {
+        SpanTerritory.forEachBlockBySection(this.getGeometry().getShape(), visitor);
+    }
+
+    @Override
+    public World getWorld() {
+        return this.territories[0].getWorld();
+    }
+}
@@ -2,6 +2,9 @@ package net.limemc.fbp.api.region;
 
 import lombok.Getter;
 import lombok.NonNull;
+import net.limemc.fbp.api.region.types.SectionCoverage;
+import net.limemc.fbp.api.region.types.SpanShape;
+import net.limemc.fbp.api.region.types.SpanTerritory;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -10,58 +13,190 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
-@Getter
+/**
+ * Территория, заданная типом и точками. При создании и при {@link #setPoints(Point...)} точки копируются
+ * и один раз компилируются в неизменяемую {@link TerritoryGeometry}, поэтому проверки принадлежности,
+ * подсчёт и обход блоков не пересчитывают фигуру и безопасно вызываются из любого потока.
+ * Изменение объектов {@link Point}, переданных в территорию или полученных из {@link #getPoints()},
+ * на территорию не влияет.
+ */
 public class Territory {
+    @Getter
     private final TerritoryTypes type;
-    private Point[] points;
+    private volatile Point[] points;
+    private volatile TerritoryGeometry geometry;
+
+    private final List<Consumer<Territory>> changeListeners = new CopyOnWriteArrayList<>();
 
     public Territory(@NonNull TerritoryTypes type, Point... points) {
         this.type = type;
-        this.points = points;
-        this.fixPoints();
+        this.points = this.fixPoints(points);
+        this.geometry = new TerritoryGeometry(this.points.length > 0 ? this.points[0].getWorld() : null, type.getTerritory().compile(this.points));
+    }
+
+    /**
+     * Для территорий, которые не описываются одним типом и точками, например {@link CompositeTerritory}.
+     * Такие территории переопределяют {@link #compile()} и {@link #getWorld()}, вызывают {@link #recompile()}
+     * после инициализации, а {@link #getType()} у них возвращает {@code null}.
+     */
+    protected Territory() {
+        this.type = null;
+        this.points = new Point[0];
+        this.geometry = new TerritoryGeometry(null, null);
     }
 
     public boolean isChunkInside(@NonNull Chunk chunk) {
-        return this.type.getTerritory().isChunkInside(this.points, chunk);
+        return this.geometry.isChunkInside(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * @return Копии точек территории.
+     */
+    public Point[] getPoints() {
+        return copy(this.points);
     }
 
+    /**
+     * Заменяет точки территории копиями {@code points} и заново компилирует её геометрию.
+     */
     public void setPoints(Point... points) {
-        this.points = points;
-        this.fixPoints();
+        Point[] fixed = this.fixPoints(points);
+
+        this.points = fixed;
+        this.geometry = new TerritoryGeometry(fixed.length > 0 ? fixed[0].getWorld() : null, this.type.getTerritory().compile(fixed));
+        this.notifyChanged();
+    }
+
+    /**
+     * Заново компилирует геометрию по {@link #compile()}.
+     */
+    protected void recompile() {
+        this.geometry = new TerritoryGeometry(this.getWorld(), this.compile());
+    }
+
+    /**
+     * Добавляет слушатель, который вызывается после изменения границ территории через {@link #setPoints(Point...)}.
+     * Через него {@link TerritoryRegistry} обновляет свой индекс.
+     */
+    public void addChangeListener(@NonNull Consumer<Territory> listener) {
+        this.changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(@NonNull Consumer<Territory> listener) {
+        this.changeListeners.remove(listener);
+    }
+
+    protected void notifyChanged() {
+        for (Consumer<Territory> listener : this.changeListeners) {
+            listener.accept(this);
+        }
     }
 
     public boolean isLocationInside(@NonNull Location location) {
-        return this.type.getTerritory().isLocationInside(this.points, location);
+        return this.geometry.isLocationInside(location);
     }
 
+    /**
+     * @return Количество блоков территории или {@link Integer#MAX_VALUE}, если оно не помещается в {@code int};
+     * точное значение возвращает {@link TerritoryGeometry#getBlocksCount()}.
+     */
     public int getTerritoryBlocksCount() {
-        return this.type.getTerritory().getTerritoryBlocksCount(this.points);
+        return (int) Math.min(Integer.MAX_VALUE, this.geometry.getBlocksCount());
     }
 
     public List<Block> getTerritoryBlocks() {
-        return this.type.getTerritory().getTerritoryBlocks(this.points);
+        TerritoryGeometry geometry = this.geometry;
+        return geometry.isEmpty() ? Collections.emptyList() : SpanTerritory.getTerritoryBlocks(geometry.getShape(), geometry.getWorld());
+    }
+
+    public void forEachBlock(@NonNull BlockVisitor visitor) {
+        SpanTerritory.forEachBlock(this.geometry.getShape(), visitor);
     }
 
-    private void fixPoints() {
-        this.type.getTerritory().fixTerritory(this.points);
+    private Point[] fixPoints(Point[] points) {
+        Point[] copy = copy(points);
+        this.type.getTerritory().fixTerritory(copy);
+        return copy;
+    }
+
+    private static Point[] copy(Point[] points) {
+        if (points == null) {
+            return new Point[0];
+        }
+
+        Point[] copy = new Point[points.length];
+
+        for (int i = 0; i < points.length; i++) {
+            copy[i] = points[i] != null ? points[i].clone() : null;
+        }
+
+        return copy;
     }
 
     public Collection<Entity> getEntitiesInTerritory() {
-        return this.type.getTerritory().getEntitiesInTerritory(this.points);
+        TerritoryGeometry geometry = this.geometry;
+        return geometry.isEmpty() ? Collections.emptyList() : SpanTerritory.getEntitiesInTerritory(geometry.getShape(), geometry.getWorld());
+    }
+
+    /**
+     * Передаёт в {@code consumer} сущности внутри территории без создания промежуточных коллекций.
+     */
+    public void forEachEntity(@NonNull Consumer<Entity> consumer) {
+        TerritoryGeometry geometry = this.geometry;
+
+        if (!geometry.isEmpty()) {
+            SpanTerritory.forEachEntity(geometry.getShape(), geometry.getWorld(), consumer);
+        }
     }
 
     @Deprecated
     public void setTerritoryBiome(@NonNull Biome biome) {
-        this.type.getTerritory().setTerritoryBiome(this.points, biome);
+        TerritoryGeometry geometry = this.geometry;
+
+        if (!geometry.isEmpty()) {
+            SpanTerritory.setTerritoryBiome(geometry.getShape(), geometry.getWorld(), biome);
+        }
     }
 
     public List<int[]> getTerritoryChunkCoordinates() {
-        return this.type.getTerritory().getTerritoryChunkCoordinates(this.points);
+        TerritoryGeometry geometry = this.geometry;
+        return geometry.isEmpty() ? Collections.emptyList() : SpanTerritory.getTerritoryChunkCoordinates(geometry.getShape());
+    }
+
+    /**
+     * @return Скомпилированная геометрия территории.
+     */
+    public TerritoryGeometry getGeometry() {
+        return this.geometry;
+    }
+
+    /**
+     * Строит геометрию по текущим точкам. Вызывается только при их изменении; для запросов используйте
+     * {@link #getGeometry()}.
+     *
+     * @return Геометрия территории или {@code null}, если точек недостаточно.
+     */
+    protected SpanShape compile() {
+        return this.type.getTerritory().compile(this.points);
+    }
+
+    /**
+     * Определяет, лежит ли секция чанка целиком внутри территории, целиком снаружи или на её границе.
+     *
+     * @param sectionX Координата X секции (X блока, делённая на 16).
+     * @param sectionY Координата Y секции.
+     * @param sectionZ Координата Z секции.
+     */
+    public SectionCoverage getSectionCoverage(int sectionX, int sectionY, int sectionZ) {
+        return this.geometry.getShape().getSectionCoverage(sectionX, sectionY, sectionZ);
     }
 
     public World getWorld() {
-        return this.points[0].getWorld();
+        return this.geometry.getWorld();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package net.limemc.fbp.api.region;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.region.types.CompositeShape;
+import net.limemc.fbp.api.region.types.SpanShape;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Неизменяемая геометрия территории, построенная по её точкам один раз. Хранит мир, фигуру, границы
+ * в блоках и чанках в final полях, поэтому проверки принадлежности не обращаются к {@link Point}
+ * и безопасно читаются из любого потока.
+ */
+@Getter
+public final class TerritoryGeometry {
+    /**
+     * Геометрия территории без блоков, например с недостаточным количеством точек.
+     */
+    static final SpanShape EMPTY_SHAPE = new CompositeShape(CompositeShape.Operation.UNION);
+
+    private final World world;
+    private final SpanShape shape;
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final int minChunkX, minChunkZ;
+    private final int maxChunkX, maxChunkZ;
+    private final boolean empty;
+    /**
+     * Количество блоков считается при первом запросе: для составных фигур это обход пограничных секций.
+     */
+    private volatile long blocksCount = -1;
+
+    /**
+     * @param world Мир территории или {@code null}, если он неизвестен.
+     * @param shape Фигура территории или {@code null}, если территория пуста.
+     */
+    public TerritoryGeometry(World world, SpanShape shape) {
+        this.world = world;
+        this.shape = shape != null ? shape : EMPTY_SHAPE;
+        this.empty = world == null || this.shape.isEmpty();
+
+        this.minX = this.shape.getMinX();
+        this.minY = this.shape.getMinY();
+        this.minZ = this.shape.getMinZ();
+        this.maxX = this.shape.getMaxX();
+        this.maxY = this.shape.getMaxY();
+        this.maxZ = this.shape.getMaxZ();
+
+        this.minChunkX = this.minX >> 4;
+        this.minChunkZ = this.minZ >> 4;
+        this.maxChunkX = this.maxX >> 4;
+        this.maxChunkZ = this.maxZ >> 4;
+    }
+
+    /**
+     * @return Точное количество блоков внутри территории.
+     */
+    public long getBlocksCount() {
+        long blocksCount = this.blocksCount;
+
+        if (blocksCount < 0) {
+            this.blocksCount = blocksCount = this.empty ? 0 : this.shape.getBlocksCount();
+        }
+
+        return blocksCount;
+    }
+
+    public boolean isLocationInside(@NonNull Location location) {
+        int x = location.getBlockX(), y = location.getBlockY(), z = location.getBlockZ();
+
+        return !this.empty && x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY
+                && z >= this.minZ && z <= this.maxZ && this.world.equals(location.getWorld())
+                && this.shape.contains(x, y, z, null);
+    }
+
+    /**
+     * Проверяет, есть ли у территории блоки в чанке с учётом высоты мира.
+     */
+    public boolean isChunkInside(World world, int chunkX, int chunkZ) {
+        return !this.empty && chunkX >= this.minChunkX && chunkX <= this.maxChunkX
+                && chunkZ >= this.minChunkZ && chunkZ <= this.maxChunkZ && this.world.equals(world)
+                && this.maxY >= world.getMinHeight() && this.minY < world.getMaxHeight()
+                && this.shape.intersectsChunk(chunkX, chunkZ);
+    }
+}
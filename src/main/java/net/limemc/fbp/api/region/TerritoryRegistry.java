@@ -0,0 +1,247 @@
+package net.limemc.fbp.api.region;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import lombok.NonNull;
+import net.limemc.fbp.api.utility.PackedPositions;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Реестр территорий с пространственным индексом по чанкам. Для каждого мира хранится таблица
+ * {@code чанк -> территории, которые его задевают}, поэтому поиск территорий по локации или чанку
+ * проверяет только территории одного чанка, а не все зарегистрированные.
+ * <p>
+ * Индекс территории обновляется автоматически при {@link Territory#setPoints(Point...)}: это единственный
+ * способ изменить её границы, так как территория хранит копии точек.
+ * Реестр не потокобезопасен и рассчитан на работу в основном потоке.
+ */
+public class TerritoryRegistry {
+    private static final Territory[] NO_TERRITORIES = new Territory[0];
+
+    private final Map<UUID, Long2ObjectMap<Territory[]>> worlds = new Object2ObjectOpenHashMap<>();
+    private final Map<Territory, Entry> entries = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * Регистрирует территорию и добавляет её во все чанки, которые она задевает.
+     * Повторная регистрация перестраивает индекс территории.
+     */
+    public void register(@NonNull Territory territory) {
+        Entry entry = this.entries.get(territory);
+
+        if (entry == null) {
+            entry = new Entry(territory);
+            this.entries.put(territory, entry);
+            territory.addChangeListener(entry.listener);
+        } else {
+            this.unindex(entry);
+        }
+
+        this.index(entry);
+    }
+
+    /**
+     * Удаляет территорию из реестра.
+     * @return {@code true}, если территория была зарегистрирована.
+     */
+    public boolean unregister(@NonNull Territory territory) {
+        Entry entry = this.entries.remove(territory);
+
+        if (entry == null) {
+            return false;
+        }
+
+        territory.removeChangeListener(entry.listener);
+        this.unindex(entry);
+        return true;
+    }
+
+    /**
+     * Перестраивает индекс территории после изменения её границ. Затрагивает только чанки старых
+     * и новых границ этой территории.
+     */
+    public void update(@NonNull Territory territory) {
+        Entry entry = this.entries.get(territory);
+
+        if (entry != null) {
+            this.unindex(entry);
+            this.index(entry);
+        }
+    }
+
+    public boolean isRegistered(@NonNull Territory territory) {
+        return this.entries.containsKey(territory);
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public void clear() {
+        for (Entry entry : this.entries.values()) {
+            entry.territory.removeChangeListener(entry.listener);
+        }
+
+        this.entries.clear();
+        this.worlds.clear();
+    }
+
+    /**
+     * Возвращает территории, внутри которых находится локация.
+     */
+    public List<Territory> getTerritories(@NonNull Location location) {
+        List<Territory> result = new ArrayList<>();
+        this.forEachTerritory(location, result::add);
+        return result;
+    }
+
+    /**
+     * Передаёт в {@code consumer} территории, внутри которых находится локация, без создания списка.
+     */
+    public void forEachTerritory(@NonNull Location location, @NonNull Consumer<Territory> consumer) {
+        for (Territory territory : this.getCandidates(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+            if (territory.isLocationInside(location)) {
+                consumer.accept(territory);
+            }
+        }
+    }
+
+    /**
+     * @return Первая найденная территория, внутри которой находится локация, или {@code null}.
+     */
+    public Territory getTerritory(@NonNull Location location) {
+        for (Territory territory : this.getCandidates(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+            if (territory.isLocationInside(location)) {
+                return territory;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean isInsideAny(@NonNull Location location) {
+        return this.getTerritory(location) != null;
+    }
+
+    /**
+     * Возвращает территории, которые задевают чанк. Проверка не нужна: территория попадает в чанк индекса,
+     * только если пересекается с ним.
+     */
+    public List<Territory> getTerritories(@NonNull Chunk chunk) {
+        return this.getTerritories(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    public List<Territory> getTerritories(@NonNull World world, int chunkX, int chunkZ) {
+        Territory[] candidates = this.getCandidates(world, chunkX, chunkZ);
+        return candidates.length == 0 ? Collections.emptyList() : List.of(candidates);
+    }
+
+    private Territory[] getCandidates(World world, int chunkX, int chunkZ) {
+        if (world == null) {
+            return NO_TERRITORIES;
+        }
+
+        Long2ObjectMap<Territory[]> chunks = this.worlds.get(world.getUID());
+
+        if (chunks == null) {
+            return NO_TERRITORIES;
+        }
+
+        Territory[] territories = chunks.get(PackedPositions.chunkKey(chunkX, chunkZ));
+        return territories != null ? territories : NO_TERRITORIES;
+    }
+
+    private void index(Entry entry) {
+        Territory territory = entry.territory;
+        World world = territory.getWorld();
+
+        if (world == null) {
+            return;
+        }
+
+        List<int[]> coordinates = territory.getTerritoryChunkCoordinates();
+        Long2ObjectMap<Territory[]> chunks = this.worlds.computeIfAbsent(world.getUID(), uid -> new Long2ObjectOpenHashMap<>());
+
+        entry.world = world.getUID();
+        entry.chunks = new long[coordinates.size()];
+
+        int i = 0;
+        for (int[] coordinate : coordinates) {
+            long key = PackedPositions.chunkKey(coordinate[0], coordinate[1]);
+            Territory[] territories = chunks.get(key);
+
+            if (territories == null) {
+                chunks.put(key, new Territory[] {territory});
+            } else {
+                Territory[] extended = new Territory[territories.length + 1];
+
+                System.arraycopy(territories, 0, extended, 0, territories.length);
+                extended[territories.length] = territory;
+                chunks.put(key, extended);
+            }
+
+            entry.chunks[i++] = key;
+        }
+    }
+
+    private void unindex(Entry entry) {
+        if (entry.world == null) {
+            return;
+        }
+
+        Long2ObjectMap<Territory[]> chunks = this.worlds.get(entry.world);
+
+        for (long key : entry.chunks) {
+            Territory[] territories = chunks.get(key);
+
+            if (territories == null) {
+                continue;
+            }
+
+            if (territories.length == 1) {
+                chunks.remove(key);
+                continue;
+            }
+
+            Territory[] reduced = new Territory[territories.length - 1];
+            int size = 0;
+
+            for (Territory territory : territories) {
+                if (territory != entry.territory && size < reduced.length) {
+                    reduced[size++] = territory;
+                }
+            }
+
+            chunks.put(key, reduced);
+        }
+
+        if (chunks.isEmpty()) {
+            this.worlds.remove(entry.world);
+        }
+
+        entry.world = null;
+        entry.chunks = null;
+    }
+
+    private final class Entry {
+        private final Territory territory;
+        private final Consumer<Territory> listener;
+        private UUID world;
+        private long[] chunks;
+
+        private Entry(Territory territory) {
+            this.territory = territory;
+            this.listener = changed -> TerritoryRegistry.this.update(changed);
+        }
+    }
+}
@@ -5,13 +5,20 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.limemc.fbp.api.region.types.CuboidTerritory;
 import net.limemc.fbp.api.region.types.CylTerritory;
+import net.limemc.fbp.api.region.types.EllipsoidTerritory;
+import net.limemc.fbp.api.region.types.HullTerritory;
 import net.limemc.fbp.api.region.types.ITerritory;
+import net.limemc.fbp.api.region.types.PolygonTerritory;
 
 @Getter
 @RequiredArgsConstructor
 public enum TerritoryTypes {
     CUBE(new CuboidTerritory()),
-    CYL(new CylTerritory());
+    CYL(new CylTerritory()),
+    SPHERE(new EllipsoidTerritory(true)),
+    ELLIPSOID(new EllipsoidTerritory(false)),
+    POLYGON(new PolygonTerritory()),
+    HULL(new HullTerritory());
 
     private final ITerritory territory;
 
@@ -0,0 +1,325 @@
+package net.limemc.fbp.api.region.types;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Геометрия, составленная из других фигур операцией над множествами. Отрезки строки получаются операцией
+ * над отрезками составляющих, а положение секции - по положению секции относительно каждой составляющей,
+ * поэтому секции целиком внутри или целиком снаружи определяются без перебора блоков и строк.
+ */
+public class CompositeShape extends SpanShape {
+    @Getter
+    private final Operation operation;
+    private final SpanShape[] shapes;
+    private final int maxSpans;
+    /**
+     * Буферы для промежуточных отрезков {@link #combine}: фигура вызывается из разных потоков, поэтому у каждого
+     * потока свои. Вложенные составные фигуры пользуются своими буферами.
+     */
+    private final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[3][this.getMaxSpans() * 2]);
+
+    /**
+     * @param operation Операция над фигурами.
+     * @param shapes    Фигуры; для {@link Operation#DIFFERENCE} из первой вычитаются остальные.
+     */
+    public CompositeShape(@NonNull Operation operation, @NonNull SpanShape... shapes) {
+        this(operation, shapes, getBounds(operation, shapes));
+    }
+
+    private CompositeShape(Operation operation, SpanShape[] shapes, int[] bounds) {
+        super(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+
+        this.operation = operation;
+        this.shapes = shapes.clone();
+
+        int maxSpans = 1;
+        for (SpanShape shape : shapes) {
+            maxSpans += shape.getMaxSpans();
+        }
+
+        this.maxSpans = maxSpans;
+    }
+
+    private static int[] getBounds(Operation operation, SpanShape[] shapes) {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+
+        if (shapes.length == 0) {
+            return new int[] {0, 0, 0, -1, -1, -1};
+        }
+
+        if (operation == Operation.DIFFERENCE) {
+            shapes = new SpanShape[] {shapes[0]};
+        }
+
+        boolean union = operation != Operation.INTERSECTION;
+
+        for (SpanShape shape : shapes) {
+            if (shape.isEmpty()) {
+                if (union) {
+                    continue;
+                }
+                return new int[] {0, 0, 0, -1, -1, -1};
+            }
+
+            int[] other = {shape.getMinX(), shape.getMinY(), shape.getMinZ(), shape.getMaxX(), shape.getMaxY(), shape.getMaxZ()};
+
+            for (int i = 0; i < 3; i++) {
+                boolean first = bounds[i] == Integer.MAX_VALUE;
+
+                bounds[i] = first ? other[i] : union ? Math.min(bounds[i], other[i]) : Math.max(bounds[i], other[i]);
+                bounds[i + 3] = first ? other[i + 3] : union ? Math.max(bounds[i + 3], other[i + 3]) : Math.min(bounds[i + 3], other[i + 3]);
+            }
+        }
+
+        for (int i = 0; i < 3; i++) {
+            if (bounds[i] == Integer.MAX_VALUE || bounds[i] > bounds[i + 3]) {
+                return new int[] {0, 0, 0, -1, -1, -1};
+            }
+        }
+
+        return bounds;
+    }
+
+    @Override
+    public int getMaxSpans() {
+        return this.maxSpans;
+    }
+
+    @Override
+    public int getSpans(int x, int y, int[] spans) {
+        return this.combine(x, y, false, spans);
+    }
+
+    /**
+     * Для объединения проекция точная. Для пересечения берётся пересечение проекций, для разности - проекция
+     * первой фигуры: обе могут захватить лишние столбцы, но не пропускают нужные.
+     */
+    @Override
+    public int getColumnSpans(int x, int[] spans) {
+        return this.combine(x, 0, true, spans);
+    }
+
+    private int combine(int x, int y, boolean column, int[] spans) {
+        if (this.isEmpty()) {
+            return 0;
+        }
+
+        int[][] scratch = this.scratch.get();
+        int[] current = scratch[0];
+        int[] next = scratch[1];
+        int[] child = scratch[2];
+
+        int count = this.getChildSpans(this.shapes[0], x, y, column, current);
+        int shapes = column && this.operation == Operation.DIFFERENCE ? 1 : this.shapes.length;
+
+        for (int i = 1; i < shapes; i++) {
+            if (count == 0 && this.operation != Operation.UNION) {
+                return 0;
+            }
+
+            int childCount = this.getChildSpans(this.shapes[i], x, y, column, child);
+
+            switch (this.operation) {
+                case UNION:
+                    count = SpanOperations.union(current, count, child, childCount, next);
+                    break;
+                case INTERSECTION:
+                    count = SpanOperations.intersect(current, count, child, childCount, next);
+                    break;
+                default:
+                    count = SpanOperations.subtract(current, count, child, childCount, next);
+                    break;
+            }
+
+            int[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        System.arraycopy(current, 0, spans, 0, count * 2);
+        return count;
+    }
+
+    private int getChildSpans(SpanShape shape, int x, int y, boolean column, int[] spans) {
+        if (shape.isEmpty() || x < shape.getMinX() || x > shape.getMaxX()) {
+            return 0;
+        }
+
+        if (column) {
+            return shape.getColumnSpans(x, spans);
+        }
+
+        return y < shape.getMinY() || y > shape.getMaxY() ? 0 : shape.getSpans(x, y, spans);
+    }
+
+    /**
+     * Проверяет составляющие по отдельности, без операций над отрезками.
+     */
+    @Override
+    public boolean contains(int x, int y, int z, int[] spans) {
+        if (this.isEmpty() || x < this.getMinX() || x > this.getMaxX() || y < this.getMinY() || y > this.getMaxY()
+                || z < this.getMinZ() || z > this.getMaxZ()) {
+            return false;
+        }
+
+        switch (this.operation) {
+            case UNION:
+                for (SpanShape shape : this.shapes) {
+                    if (shape.contains(x, y, z, spans)) {
+                        return true;
+                    }
+                }
+                return false;
+            case INTERSECTION:
+                for (SpanShape shape : this.shapes) {
+                    if (!shape.contains(x, y, z, spans)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                if (!this.shapes[0].contains(x, y, z, spans)) {
+                    return false;
+                }
+
+                for (int i = 1; i < this.shapes.length; i++) {
+                    if (this.shapes[i].contains(x, y, z, spans)) {
+                        return false;
+                    }
+                }
+                return true;
+        }
+    }
+
+    @Override
+    public SectionCoverage getSectionCoverage(int sectionX, int sectionY, int sectionZ) {
+        if (this.getBoundsCoverage(sectionX, sectionY, sectionZ) == SectionCoverage.OUTSIDE) {
+            return SectionCoverage.OUTSIDE;
+        }
+
+        switch (this.operation) {
+            case UNION: {
+                boolean outside = true;
+
+                for (SpanShape shape : this.shapes) {
+                    SectionCoverage coverage = shape.getSectionCoverage(sectionX, sectionY, sectionZ);
+
+                    if (coverage == SectionCoverage.INSIDE) {
+                        return SectionCoverage.INSIDE;
+                    }
+
+                    outside &= coverage == SectionCoverage.OUTSIDE;
+                }
+
+                return outside ? SectionCoverage.OUTSIDE : SectionCoverage.PARTIAL;
+            }
+            case INTERSECTION: {
+                boolean inside = true;
+
+                for (SpanShape shape : this.shapes) {
+                    SectionCoverage coverage = shape.getSectionCoverage(sectionX, sectionY, sectionZ);
+
+                    if (coverage == SectionCoverage.OUTSIDE) {
+                        return SectionCoverage.OUTSIDE;
+                    }
+
+                    inside &= coverage == SectionCoverage.INSIDE;
+                }
+
+                return inside ? SectionCoverage.INSIDE : SectionCoverage.PARTIAL;
+            }
+            default: {
+                SectionCoverage base = this.shapes[0].getSectionCoverage(sectionX, sectionY, sectionZ);
+
+                if (base == SectionCoverage.OUTSIDE) {
+                    return SectionCoverage.OUTSIDE;
+                }
+
+                boolean untouched = true;
+
+                for (int i = 1; i < this.shapes.length; i++) {
+                    SectionCoverage coverage = this.shapes[i].getSectionCoverage(sectionX, sectionY, sectionZ);
+
+                    if (coverage == SectionCoverage.INSIDE) {
+                        return SectionCoverage.OUTSIDE;
+                    }
+
+                    untouched &= coverage == SectionCoverage.OUTSIDE;
+                }
+
+                return base == SectionCoverage.INSIDE && untouched ? SectionCoverage.INSIDE : SectionCoverage.PARTIAL;
+            }
+        }
+    }
+
+    /**
+     * Считает блоки по секциям: секции целиком внутри дают 4096 блоков сразу, пустые пропускаются,
+     * и только пограничные секции считаются по отрезкам.
+     */
+    @Override
+    public long getBlocksCount() {
+        if (this.isEmpty()) {
+            return 0;
+        }
+
+        int[] spans = new int[this.maxSpans * 2];
+        long count = 0;
+
+        for (int sectionX = this.getMinX() >> 4; sectionX <= this.getMaxX() >> 4; sectionX++) {
+            for (int sectionZ = this.getMinZ() >> 4; sectionZ <= this.getMaxZ() >> 4; sectionZ++) {
+                for (int sectionY = this.getMinY() >> 4; sectionY <= this.getMaxY() >> 4; sectionY++) {
+                    SectionCoverage coverage = this.getSectionCoverage(sectionX, sectionY, sectionZ);
+
+                    if (coverage == SectionCoverage.INSIDE) {
+                        count += 16 * 16 * 16;
+                    } else if (coverage == SectionCoverage.PARTIAL) {
+                        count += this.countSection(sectionX, sectionY, sectionZ, spans);
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private long countSection(int sectionX, int sectionY, int sectionZ, int[] spans) {
+        int minZ = sectionZ << 4, maxZ = minZ | 15;
+        int toX = Math.min(this.getMaxX(), sectionX << 4 | 15);
+        int toY = Math.min(this.getMaxY(), sectionY << 4 | 15);
+        long count = 0;
+
+        for (int y = Math.max(this.getMinY(), sectionY << 4); y <= toY; y++) {
+            for (int x = Math.max(this.getMinX(), sectionX << 4); x <= toX; x++) {
+                int spansCount = this.getSpans(x, y, spans);
+
+                for (int i = 0; i < spansCount; i++) {
+                    int from = Math.max(minZ, spans[i << 1]);
+                    int to = Math.min(maxZ, spans[i << 1 | 1]);
+
+                    if (from <= to) {
+                        count += to - from + 1;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public enum Operation {
+        /**
+         * Блоки, входящие хотя бы в одну фигуру.
+         */
+        UNION,
+        /**
+         * Блоки, входящие во все фигуры.
+         */
+        INTERSECTION,
+        /**
+         * Блоки первой фигуры, не входящие ни в одну из остальных.
+         */
+        DIFFERENCE
+    }
+}
@@ -1,15 +1,6 @@
 package net.limemc.fbp.api.region.types;
 
-import lombok.NonNull;
 import net.limemc.fbp.api.region.Point;
-import org.bukkit.Chunk;
-import org.bukkit.Location;
-import org.bukkit.World;
-import org.bukkit.block.Biome;
-import org.bukkit.block.Block;
-import org.bukkit.entity.Entity;
-
-import java.util.*;
 
 /**
  * Реализация интерфейса {@link ITerritory}
@@ -21,83 +12,6 @@ import java.util.*;
  */
 public class CylTerritory implements ITerritory {
 
-    /**
-     * Проверяет, находится ли заданная позиция в пределах цилиндрической территории, определенной точками.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @param pos Позиция для проверки.
-     * @return True, если позиция находится в пределах территории, false в противном случае.
-     */
-    @Override
-    public boolean isLocationInside(Point[] points, @NonNull Location pos) {
-        if (points == null || points.length != 2) {
-            return false;
-        }
-
-        return isContains(points, pos.getWorld(), pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
-    }
-
-    /**
-     * Проверяет, находится ли заданный чанк в пределах цилиндрической территории. Эта реализация проверяет,
-     * находится ли какой-либо блок в границах чанка внутри цилиндра. Более эффективные алгоритмы могут существовать
-     * в зависимости от конкретных потребностей.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @param chunk Чанк для проверки.
-     * @return True, если какая-либо часть чанка находится в пределах территории, false в противном случае.
-     */
-    @Override
-    public boolean isChunkInside(Point[] points, @NonNull Chunk chunk) {
-        if (points == null || points.length != 2) {
-            return false;
-        }
-
-        World world = chunk.getWorld();
-        int chunkX = chunk.getX();
-        int chunkZ = chunk.getZ();
-        int minX = chunkX * 16;
-        int minZ = chunkZ * 16;
-        int maxX = minX + 15;
-        int maxZ = minZ + 15;
-
-        for (int x = minX; x <= maxX; x++) {
-            for (int z = minZ; z <= maxZ; z++) {
-                for (int y = 0; y < world.getMaxHeight(); y++) { // Проверка всех возможных значений y
-                    if (isContains(points, world, x, y, z)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Проверяет, находится ли заданная мировоая координата в пределах цилиндрической территории.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @param world Мир, в котором находится координата.
-     * @param x Координата x.
-     * @param y Координата y.
-     * @param z Координата z.
-     * @return True, если координата находится в пределах территории, false в противном случае.
-     */
-    private boolean isContains(Point[] points, @NonNull World world, int x, int y, int z) {
-        if (points == null || points.length != 2) {
-            return false;
-        }
-
-        Point centerTop = points[0];
-        Point leftDown = points[1];
-        int radius = centerTop.getX() - leftDown.getX();
-        if (world.equals(centerTop.getWorld()) &&
-                x >= leftDown.getX() && x <= centerTop.getX() * 2 - leftDown.getX() &&
-                z >= leftDown.getZ() && z <= centerTop.getZ() * 2 - leftDown.getZ() &&
-                y >= leftDown.getY() && y <= centerTop.getY()) {
-            int vecX = centerTop.getX() - x;
-            int vecZ = centerTop.getZ() - z;
-            return vecX * vecX + vecZ * vecZ <= radius * radius; // Эффективнее, чем Math.sqrt
-        }
-        return false;
-    }
-
     /**
      * Исправляет массив точек, чтобы гарантировать, что points[0] - это центр-верх, а points[1] - это низ-слева.
      * Также вычисляет правильную нижнюю левую точку на основе радиуса.
@@ -122,171 +36,172 @@ public class CylTerritory implements ITerritory {
         leftDown.setZ(centerTop.getZ() - radius); // Исправлено для использования радиуса и для Z.
     }
 
+
     /**
-     * Получает все сущности в пределах цилиндрической территории.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @return Коллекция сущностей в пределах территории.
+     * Целочисленный квадратный корень: наибольшее n, для которого n * n <= value.
      */
-    @Override
-    public Collection<Entity> getEntitiesInTerritory(Point[] points) {
-        if (points == null || points.length != 2) {
-            return Collections.emptyList();
-        }
-
-        Point centerTop = points[0];
-        Point leftDown = points[1];
+    static int sqrt(long value) {
+        int root = (int) Math.sqrt(value);
 
-        int radiusHorizontally = centerTop.getX() - leftDown.getX();
-        int radiusVertical = centerTop.getY() - leftDown.getY();
+        while ((long) root * root > value) {
+            root--;
+        }
 
-        int x = centerTop.getX();
-        int y = leftDown.getY() + radiusVertical / 2;
-        int z = centerTop.getZ();
+        while ((long) (root + 1) * (root + 1) <= value) {
+            root++;
+        }
 
-        List<Entity> result = new LinkedList<>();
+        return root;
+    }
 
-        for (Entity entity : centerTop.getWorld().getNearbyEntities(new Location(centerTop.getWorld(), x, y, z), radiusHorizontally + 1, radiusVertical, radiusHorizontally)) {
-            Location pos = entity.getLocation();
+    /**
+     * Половины хорд окружности для каждого столбца X: в столбце {@code centerX - radius + i} внутрь цилиндра
+     * попадают блоки с Z от {@code centerZ - halfChords[i]} до {@code centerZ + halfChords[i]}.
+     * Вычисляется один раз и используется для всех слоёв по Y.
+     * @param radius Радиус цилиндра.
+     * @return Массив длиной {@code 2 * radius + 1}.
+     */
+    static int[] getHalfChords(int radius) {
+        if (radius < 0) {
+            return new int[0];
+        }
 
-            int vecX = centerTop.getX() - pos.getBlockX();
-            int vecZ = centerTop.getZ() - pos.getBlockZ();
+        int[] halfChords = new int[radius * 2 + 1];
+        long radiusSquared = (long) radius * radius;
 
-            if (vecX * vecX + vecZ * vecZ <= radiusHorizontally * radiusHorizontally) { // Эффективнее
-                result.add(entity);
-            }
+        for (int i = 0; i < halfChords.length; i++) {
+            long vecX = i - radius;
+            halfChords[i] = sqrt(radiusSquared - vecX * vecX);
         }
-        return result;
-    }
 
+        return halfChords;
+    }
 
     /**
-     * Устанавливает биом для всех блоков в пределах цилиндрической территории.
+     * Строит геометрию цилиндра по заранее вычисленным хордам.
      * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @param biome Биом для установки.
+     * @return Геометрия цилиндра или {@code null}, если точек не две.
      */
     @Override
-    @Deprecated
-    public void setTerritoryBiome(Point[] points, @NonNull Biome biome) {
+    public SpanShape compile(Point[] points) {
         if (points == null || points.length != 2) {
-            return;
+            return null;
         }
 
         Point centerTop = points[0];
         Point leftDown = points[1];
 
-        int minX = leftDown.getX();
-        int minZ = leftDown.getZ();
+        return new Shape(centerTop.getX(), centerTop.getZ(), leftDown.getY(), centerTop.getY(),
+                centerTop.getX() - leftDown.getX());
+    }
+
+    static class Shape extends SpanShape {
+        private final int centerX, centerZ, radius;
+        /**
+         * Квадрат радиуса или -1 для пустой фигуры, чтобы проверки обходились одним сравнением.
+         */
+        private final long radiusSquared;
+        /**
+         * Хорды вычисляются при первом обращении к отрезкам: проверкам сущностей и чанков они не нужны.
+         */
+        private volatile int[] halfChords;
 
-        int maxX = centerTop.getX() * 2 - leftDown.getX();
-        int maxZ = centerTop.getZ() * 2 - leftDown.getZ();
+        Shape(int centerX, int centerZ, int minY, int maxY, int radius) {
+            super(centerX - radius, minY, centerZ - radius, centerX + radius, maxY, centerZ + radius);
 
-        World world = centerTop.getWorld();
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+            this.radiusSquared = radius >= 0 ? (long) radius * radius : -1L;
+        }
 
-        int minY = leftDown.getY();
-        int maxY = centerTop.getY();
+        private int[] getHalfChords() {
+            int[] halfChords = this.halfChords;
 
-        for (int x = minX; x <= maxX; ++x) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                for (int y = minY; y <= maxY; y++) {
-                    if (isContains(points, world, x, y, z)) {
-                        world.setBiome(x, z, biome);
-                    }
-                }
+            if (halfChords == null) {
+                this.halfChords = halfChords = CylTerritory.getHalfChords(this.radius);
             }
-        }
-    }
 
-    /**
-     * Получает список координат чанков, которые пересекаются с цилиндрической территорией.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @return Список координат чанков в виде массивов int [chunkX, chunkZ].
-     */
-    @Override
-    public List<int[]> getTerritoryChunkCoordinates(Point[] points) {
-        if (points == null || points.length != 2) {
-            return Collections.emptyList();
+            return halfChords;
         }
 
-        Point centerTop = points[0];
-        Point leftDown = points[1];
-
-        int radius = centerTop.getX() - leftDown.getX();
-        int centerX = centerTop.getX();
-        int centerZ = centerTop.getZ();
+        @Override
+        public boolean contains(int x, int y, int z, int[] spans) {
+            if (y < this.getMinY() || y > this.getMaxY()) {
+                return false;
+            }
 
-        List<int[]> chunks = new ArrayList<>();
+            long vecX = this.centerX - x;
+            long vecZ = this.centerZ - z;
+            return vecX * vecX + vecZ * vecZ <= this.radiusSquared;
+        }
 
-        for (int x = centerX - radius; x <= centerX + radius; x++) {
-            for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+        @Override
+        public boolean intersectsChunk(int chunkX, int chunkZ) {
+            int minX = chunkX << 4;
+            int minZ = chunkZ << 4;
 
-                int chunkX = x >> 4;
-                int chunkZ = z >> 4;
+            long vecX = this.centerX - Math.max(minX, Math.min(this.centerX, minX + 15));
+            long vecZ = this.centerZ - Math.max(minZ, Math.min(this.centerZ, minZ + 15));
 
-                if (!containsChunk(chunks, chunkX, chunkZ)) {
-                    chunks.add(new int[] {chunkX, chunkZ});
-                }
-            }
+            return vecX * vecX + vecZ * vecZ <= this.radiusSquared;
         }
-        return chunks;
-    }
 
-    private boolean containsChunk(@NonNull List<int[]> chunks, int chunkX, int chunkZ){
-        for (int[] chunk : chunks) {
-            if (chunk[0] == chunkX && chunk[1] == chunkZ) {
-                return true;
-            }
-        }
+        @Override
+        public int getSpans(int x, int y, int[] spans) {
+            int halfChord = this.getHalfChords()[x - this.centerX + this.radius];
 
-        return false;
-    }
+            spans[0] = this.centerZ - halfChord;
+            spans[1] = this.centerZ + halfChord;
+            return 1;
+        }
 
-    /**
-     * Вычисляет приблизительное количество блоков внутри цилиндрической территории. Использует формулу объема цилиндра.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @return Приблизительное количество блоков.
-     */
-    @Override
-    public int getTerritoryBlocksCount(Point[] points) {
-        if (points == null || points.length != 2) {
-            return 0;
+        @Override
+        public int getColumnSpans(int x, int[] spans) {
+            return this.getSpans(x, 0, spans);
         }
 
-        Point centerTop = points[0];
-        Point leftDown = points[1];
+        /**
+         * Круг выпуклый, поэтому квадрат секции целиком внутри, если внутри его дальний от центра угол,
+         * и целиком снаружи, если снаружи ближайшая к центру точка.
+         */
+        @Override
+        public SectionCoverage getSectionCoverage(int sectionX, int sectionY, int sectionZ) {
+            SectionCoverage bounds = this.getBoundsCoverage(sectionX, sectionY, sectionZ);
 
-        int radius = centerTop.getX() - leftDown.getX();
-        int height = centerTop.getY() - leftDown.getY();
+            if (bounds == SectionCoverage.OUTSIDE) {
+                return bounds;
+            }
 
-        return (int) (Math.PI * radius * radius * height);
-    }
+            int minX = sectionX << 4, minZ = sectionZ << 4;
+            long radiusSquared = this.radiusSquared;
 
-    /**
-     * Получает все блоки внутри цилиндрической территории.
-     * @param points Массив из двух точек: [0] = центр-верх, [1] = низ-слева.
-     * @return Список блоков внутри территории.
-     */
-    @Override
-    public List<Block> getTerritoryBlocks(Point[] points) {
-        if (points == null || points.length != 2) {
-            return Collections.emptyList();
-        }
+            long nearX = this.centerX - Math.max(minX, Math.min(this.centerX, minX + 15));
+            long nearZ = this.centerZ - Math.max(minZ, Math.min(this.centerZ, minZ + 15));
 
-        List<Block> list = new ArrayList<>(getTerritoryBlocksCount(points));
+            if (nearX * nearX + nearZ * nearZ > radiusSquared) {
+                return SectionCoverage.OUTSIDE;
+            }
 
-        Point min = points[1];
-        Point max = points[0];
+            int minY = sectionY << 4;
+            if (minY < this.getMinY() || minY + 15 > this.getMaxY()) {
+                return SectionCoverage.PARTIAL;
+            }
 
-        World world = points[0].getWorld();
+            long farX = Math.max(Math.abs(this.centerX - minX), Math.abs(this.centerX - minX - 15));
+            long farZ = Math.max(Math.abs(this.centerZ - minZ), Math.abs(this.centerZ - minZ - 15));
 
-        for (int y = min.getY(); y <= max.getY(); ++y) {
-            for (int x = min.getX(); x <= max.getX() * 2 - min.getX(); ++x) {
-                for (int z = min.getZ(); z <= max.getZ() * 2 - min.getZ(); ++z) {
-                    if (isContains(points, world, x, y, z)) {
-                        list.add(world.getBlockAt(x, y, z));
-                    }
-                }
+            return farX * farX + farZ * farZ <= radiusSquared ? SectionCoverage.INSIDE : SectionCoverage.PARTIAL;
+        }
+
+        @Override
+        public long getBlocksCount() {
+            long columns = 0;
+            for (int halfChord : this.getHalfChords()) {
+                columns += halfChord * 2L + 1;
             }
+
+            return columns * (this.getMaxY() - this.getMinY() + 1);
         }
-        return list;
     }
 }
@@ -0,0 +1,159 @@
+package net.limemc.fbp.api.region.types;
+
+import net.limemc.fbp.api.region.Point;
+
+/**
+ * Реализация интерфейса {@link ITerritory} для шаров и эллипсоидов. Территория определяется двумя точками:
+ * центром и углом ограничивающего параллелепипеда. Радиусы по осям - расстояния между ними по X, Y и Z.
+ * Блок находится внутри, если {@code (dx/rx)² + (dy/ry)² + (dz/rz)² <= 1}; ось с нулевым радиусом
+ * допускает только координату центра.
+ */
+public class EllipsoidTerritory extends SpanTerritory {
+    private final boolean sphere;
+
+    /**
+     * @param sphere Если {@code true}, все радиусы приводятся к наибольшему из них.
+     */
+    public EllipsoidTerritory(boolean sphere) {
+        this.sphere = sphere;
+    }
+
+    /**
+     * Приводит вторую точку к нижнему углу ограничивающего параллелепипеда: {@code центр - радиусы}.
+     * @param points Массив из двух точек: [0] = центр, [1] = угол.
+     */
+    @Override
+    public void fixTerritory(Point[] points) {
+        if (points == null || points.length != 2) {
+            return;
+        }
+
+        Point center = points[0];
+        Point corner = points[1];
+
+        int radiusX = Math.abs(corner.getX() - center.getX());
+        int radiusY = Math.abs(corner.getY() - center.getY());
+        int radiusZ = Math.abs(corner.getZ() - center.getZ());
+
+        if (this.sphere) {
+            radiusX = radiusY = radiusZ = Math.max(radiusX, Math.max(radiusY, radiusZ));
+        }
+
+        corner.setX(center.getX() - radiusX);
+        corner.setY(center.getY() - radiusY);
+        corner.setZ(center.getZ() - radiusZ);
+    }
+
+    @Override
+    public SpanShape compile(Point[] points) {
+        if (points == null || points.length != 2) {
+            return null;
+        }
+
+        Point center = points[0];
+        Point corner = points[1];
+
+        return new Shape(center.getX(), center.getY(), center.getZ(),
+                Math.abs(center.getX() - corner.getX()),
+                Math.abs(center.getY() - corner.getY()),
+                Math.abs(center.getZ() - corner.getZ()));
+    }
+
+    static class Shape extends SpanShape {
+        private final int centerX, centerY, centerZ;
+        private final long radiusXSquared, radiusYSquared, radiusZSquared;
+        private final long denominator;
+
+        Shape(int centerX, int centerY, int centerZ, int radiusX, int radiusY, int radiusZ) {
+            super(centerX - radiusX, centerY - radiusY, centerZ - radiusZ,
+                    centerX + radiusX, centerY + radiusY, centerZ + radiusZ);
+
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.centerZ = centerZ;
+
+            // Нулевой радиус заменяется единицей: границы фигуры и так оставляют по этой оси только dx = 0
+            this.radiusXSquared = radiusX > 0 ? (long) radiusX * radiusX : 1L;
+            this.radiusYSquared = radiusY > 0 ? (long) radiusY * radiusY : 1L;
+            this.radiusZSquared = (long) radiusZ * radiusZ;
+            this.denominator = this.radiusXSquared * this.radiusYSquared;
+        }
+
+        @Override
+        public int getSpans(int x, int y, int[] spans) {
+            int halfSpan = this.getHalfSpan(x - this.centerX, y - this.centerY);
+
+            if (halfSpan < 0) {
+                return 0;
+            }
+
+            spans[0] = this.centerZ - halfSpan;
+            spans[1] = this.centerZ + halfSpan;
+            return 1;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z, int[] spans) {
+            if (x < this.getMinX() || x > this.getMaxX() || y < this.getMinY() || y > this.getMaxY()
+                    || z < this.getMinZ() || z > this.getMaxZ()) {
+                return false;
+            }
+
+            long vecX = x - this.centerX, vecY = y - this.centerY;
+            long remaining = this.denominator - vecX * vecX * this.radiusYSquared - vecY * vecY * this.radiusXSquared;
+            long vecZ = z - this.centerZ;
+
+            return remaining >= 0 && this.fits(vecZ, remaining);
+        }
+
+        /**
+         * Проекция эллипсоида на XZ совпадает с его сечением через центр.
+         */
+        @Override
+        public int getColumnSpans(int x, int[] spans) {
+            return this.getSpans(x, this.centerY, spans);
+        }
+
+        /**
+         * Наибольшее dz, для которого блок (dx, dy, dz) лежит внутри, или -1, если строка пуста:
+         * {@code dz² * rx² * ry² <= rz² * (rx² * ry² - dx² * ry² - dy² * rx²)}.
+         */
+        private int getHalfSpan(long vecX, long vecY) {
+            long remaining = this.denominator - vecX * vecX * this.radiusYSquared - vecY * vecY * this.radiusXSquared;
+
+            if (remaining < 0) {
+                return -1;
+            }
+
+            long halfSpan = (long) Math.sqrt((double) this.radiusZSquared * remaining / this.denominator);
+
+            while (halfSpan > 0 && !this.fits(halfSpan, remaining)) {
+                halfSpan--;
+            }
+
+            while (this.fits(halfSpan + 1, remaining)) {
+                halfSpan++;
+            }
+
+            return (int) halfSpan;
+        }
+
+        private boolean fits(long vecZ, long remaining) {
+            return lessOrEqual(vecZ * vecZ, this.denominator, this.radiusZSquared, remaining);
+        }
+
+        /**
+         * Сравнивает {@code a * b <= c * d} для неотрицательных чисел без переполнения.
+         */
+        private static boolean lessOrEqual(long a, long b, long c, long d) {
+            long left = Math.multiplyHigh(a, b);
+            long right = Math.multiplyHigh(c, d);
+
+            if (left != right) {
+                return left < right;
+            }
+
+            return Long.compareUnsigned(a * b, c * d) <= 0;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package net.limemc.fbp.api.region.types;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.limemc.fbp.api.region.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Реализация интерфейса {@link ITerritory} для выпуклой оболочки произвольного набора точек.
+ * Оболочка хранится как пересечение полупространств {@code a*x + b*y + c*z <= d} с целыми коэффициентами,
+ * поэтому принадлежность блока проверяется точно. Грани строятся добавлением точек по одной за {@code O(n^2)},
+ * а проекция на плоскость XZ - двумерная оболочка тех же точек, по которой столбцы и чанки находятся без обхода слоёв.
+ */
+public class HullTerritory extends SpanTerritory {
+
+    /**
+     * Оболочка не зависит от порядка точек, поэтому точки не изменяются.
+     * @param points Точки оболочки.
+     */
+    @Override
+    public void fixTerritory(Point[] points) {
+    }
+
+    @Override
+    public SpanShape compile(Point[] points) {
+        if (points == null || points.length == 0) {
+            return null;
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        for (Point point : points) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            minZ = Math.min(minZ, point.getZ());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+            maxZ = Math.max(maxZ, point.getZ());
+        }
+
+        // Точки хранятся относительно угла, чтобы коэффициенты граней не переполнялись
+        long[][] vertices = new long[points.length][];
+
+        for (int i = 0; i < points.length; i++) {
+            vertices[i] = new long[] {points[i].getX() - minX, points[i].getY() - minY, points[i].getZ() - minZ};
+        }
+
+        return new Shape(minX, minY, minZ, maxX, maxY, maxZ, findPlanes(vertices), vertices, hull2d(vertices, 0, 2));
+    }
+
+    /**
+     * Находит опорные плоскости оболочки. Для объёмной оболочки это плоскости граней, для плоской - её плоскость
+     * и плоскости через рёбра её двумерной оболочки, для отрезка - плоскости через него вдоль осей.
+     * Плоскости граней ограничивающего параллелепипеда добавляются всегда.
+     */
+    private static List<long[]> findPlanes(long[][] vertices) {
+        List<long[]> planes = new ArrayList<>();
+
+        for (int axis = 0; axis < 3; axis++) {
+            long[] normal = new long[3];
+
+            normal[axis] = 1;
+            addPlane(planes, vertices, normal);
+
+            normal[axis] = -1;
+            addPlane(planes, vertices, normal);
+        }
+
+        // Опорные точки: первая, первая отличная от неё, первая не на их прямой и первая не в их плоскости
+        int second = -1, third = -1, fourth = -1;
+        long[] planeNormal = null;
+
+        for (int i = 1; i < vertices.length && second < 0; i++) {
+            if (!isZero(subtract(vertices[i], vertices[0]))) {
+                second = i;
+            }
+        }
+
+        if (second < 0) {
+            return planes;
+        }
+
+        long[] direction = subtract(vertices[second], vertices[0]);
+
+        for (int i = second + 1; i < vertices.length && third < 0; i++) {
+            long[] normal = cross(direction, subtract(vertices[i], vertices[0]));
+
+            if (!isZero(normal)) {
+                third = i;
+                planeNormal = normal;
+            }
+        }
+
+        if (third < 0) {
+            // Все точки на одной прямой
+            for (int axis = 0; axis < 3; axis++) {
+                long[] unit = new long[3];
+                unit[axis] = 1;
+
+                addSupportingPlane(planes, vertices, vertices[0], cross(direction, unit));
+            }
+
+            return planes;
+        }
+
+        for (int i = third + 1; i < vertices.length && fourth < 0; i++) {
+            if (dot(planeNormal, subtract(vertices[i], vertices[0])) != 0) {
+                fourth = i;
+            }
+        }
+
+        if (fourth < 0) {
+            addPlane(planes, vertices, planeNormal);
+            addPlane(planes, vertices, negate(planeNormal));
+
+            // Проекция на плоскость без оси, вдоль которой нормаль наибольшая, сохраняет выпуклость
+            int dropped = Math.abs(planeNormal[0]) >= Math.abs(planeNormal[1])
+                    ? (Math.abs(planeNormal[0]) >= Math.abs(planeNormal[2]) ? 0 : 2)
+                    : (Math.abs(planeNormal[1]) >= Math.abs(planeNormal[2]) ? 1 : 2);
+            int[] hull = hull2d(vertices, dropped == 0 ? 1 : 0, dropped == 2 ? 1 : 2);
+
+            for (int i = 0; i < hull.length; i++) {
+                long[] from = vertices[hull[i]];
+                long[] edge = subtract(vertices[hull[(i + 1) % hull.length]], from);
+
+                addSupportingPlane(planes, vertices, from, cross(edge, planeNormal));
+            }
+
+            return planes;
+        }
+
+        for (long[] face : findFaces(vertices, 0, second, third, fourth)) {
+            addPlane(planes, vertices, new long[] {face[3], face[4], face[5]});
+        }
+
+        return planes;
+    }
+
+    /**
+     * Строит оболочку добавлением точек по одной, начиная с тетраэдра из опорных точек. Для каждой точки вне текущей
+     * оболочки видимые из неё грани удаляются, а по их границе (горизонту) к точке достраиваются новые грани.
+     * Точки на гранях и внутри пропускаются. Каждая точка просматривает все грани, поэтому всего выходит
+     * {@code O(n * F)} проверок, где {@code F} - число граней, не больше {@code 2n}.
+     *
+     * @return Грани {@code {a, b, c, nx, ny, nz}} с внешними нормалями: индексы вершин и нормаль.
+     */
+    private static List<long[]> findFaces(long[][] vertices, int a, int b, int c, int d) {
+        List<long[]> faces = new ArrayList<>();
+
+        addFace(faces, vertices, a, b, c, d);
+        addFace(faces, vertices, a, b, d, c);
+        addFace(faces, vertices, a, c, d, b);
+        addFace(faces, vertices, b, c, d, a);
+
+        LongOpenHashSet edges = new LongOpenHashSet();
+        List<long[]> visible = new ArrayList<>();
+        List<long[]> hidden = new ArrayList<>();
+
+        for (int point = 0; point < vertices.length; point++) {
+            if (point == a || point == b || point == c || point == d) {
+                continue;
+            }
+
+            long[] vertex = vertices[point];
+            edges.clear();
+            visible.clear();
+            hidden.clear();
+
+            for (long[] face : faces) {
+                long[] origin = vertices[(int) face[0]];
+
+                if (face[3] * (vertex[0] - origin[0]) + face[4] * (vertex[1] - origin[1]) + face[5] * (vertex[2] - origin[2]) > 0) {
+                    visible.add(face);
+
+                    for (int i = 0; i < 3; i++) {
+                        edges.add(edgeKey(face[i], face[(i + 1) % 3]));
+                    }
+                } else {
+                    hidden.add(face);
+                }
+            }
+
+            if (visible.isEmpty()) {
+                continue;
+            }
+
+            List<long[]> swap = faces;
+            faces = hidden;
+            hidden = swap;
+
+            // Ребро видимой грани лежит на горизонте, если смежная с ним грань осталась
+            for (long[] face : visible) {
+                for (int i = 0; i < 3; i++) {
+                    long from = face[i], to = face[(i + 1) % 3];
+
+                    if (!edges.contains(edgeKey(to, from))) {
+                        long[] normal = cross(subtract(vertices[(int) to], vertices[(int) from]),
+                                subtract(vertex, vertices[(int) from]));
+                        faces.add(new long[] {from, to, point, normal[0], normal[1], normal[2]});
+                    }
+                }
+            }
+        }
+
+        return faces;
+    }
+
+    /**
+     * Добавляет грань тетраэдра, поворачивая её нормалью от противоположной вершины {@code opposite}.
+     */
+    private static void addFace(List<long[]> faces, long[][] vertices, int a, int b, int c, int opposite) {
+        long[] normal = cross(subtract(vertices[b], vertices[a]), subtract(vertices[c], vertices[a]));
+
+        if (dot(normal, subtract(vertices[opposite], vertices[a])) > 0) {
+            faces.add(new long[] {a, c, b, -normal[0], -normal[1], -normal[2]});
+        } else {
+            faces.add(new long[] {a, b, c, normal[0], normal[1], normal[2]});
+        }
+    }
+
+    private static long edgeKey(long from, long to) {
+        return from << 32 | to;
+    }
+
+    /**
+     * Двумерная выпуклая оболочка проекции точек на оси {@code u} и {@code w} обходом Эндрю за {@code O(n log n)}.
+     * Точки на рёбрах отбрасываются.
+     *
+     * @return Индексы вершин оболочки по порядку обхода; одна или две вершины, если проекция - точка или отрезок.
+     */
+    static int[] hull2d(long[][] vertices, int u, int w) {
+        if (vertices.length == 1) {
+            return new int[] {0};
+        }
+
+        Integer[] order = new Integer[vertices.length];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (first, second) -> {
+            int compare = Long.compare(vertices[first][u], vertices[second][u]);
+            return compare != 0 ? compare : Long.compare(vertices[first][w], vertices[second][w]);
+        });
+
+        int[] hull = new int[vertices.length * 2];
+        int size = 0;
+
+        // Нижняя цепочка слева направо, затем верхняя справа налево
+        for (int i = 0; i < order.length; i++) {
+            while (size >= 2 && turn(vertices[hull[size - 2]], vertices[hull[size - 1]], vertices[order[i]], u, w) <= 0) {
+                size--;
+            }
+
+            hull[size++] = order[i];
+        }
+
+        for (int i = order.length - 2, lower = size + 1; i >= 0; i--) {
+            while (size >= lower && turn(vertices[hull[size - 2]], vertices[hull[size - 1]], vertices[order[i]], u, w) <= 0) {
+                size--;
+            }
+
+            hull[size++] = order[i];
+        }
+
+        // Последняя точка верхней цепочки совпадает с первой точкой нижней
+        return Arrays.copyOf(hull, size - 1);
+    }
+
+    private static long turn(long[] a, long[] b, long[] c, int u, int w) {
+        return (b[u] - a[u]) * (c[w] - a[w]) - (b[w] - a[w]) * (c[u] - a[u]);
+    }
+
+    /**
+     * Добавляет плоскость с нормалью {@code normal} или {@code -normal}, проходящую через {@code origin},
+     * если все точки лежат по одну сторону от неё.
+     */
+    private static void addSupportingPlane(List<long[]> planes, long[][] vertices, long[] origin, long[] normal) {
+        if (isZero(normal)) {
+            return;
+        }
+
+        boolean below = true, above = true;
+
+        for (long[] vertex : vertices) {
+            long side = dot(normal, subtract(vertex, origin));
+
+            below &= side <= 0;
+            above &= side >= 0;
+        }
+
+        if (below) {
+            addPlane(planes, vertices, normal);
+        }
+
+        if (above) {
+            addPlane(planes, vertices, negate(normal));
+        }
+    }
+
+    /**
+     * Добавляет полупространство {@code normal * p <= d}, где {@code d} - наибольшее значение по всем точкам.
+     * Нормаль сокращается на НОД, повторы отбрасываются.
+     */
+    private static void addPlane(List<long[]> planes, long[][] vertices, long[] normal) {
+        long divisor = gcd(gcd(Math.abs(normal[0]), Math.abs(normal[1])), Math.abs(normal[2]));
+        long[] plane = {normal[0] / divisor, normal[1] / divisor, normal[2] / divisor, Long.MIN_VALUE};
+
+        for (long[] vertex : vertices) {
+            plane[3] = Math.max(plane[3], dot(plane, vertex));
+        }
+
+        for (long[] other : planes) {
+            if (Arrays.equals(other, plane)) {
+                return;
+            }
+        }
+
+        planes.add(plane);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static long[] subtract(long[] a, long[] b) {
+        return new long[] {a[0] - b[0], a[1] - b[1], a[2] - b[2]};
+    }
+
+    private static long[] cross(long[] a, long[] b) {
+        return new long[] {a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]};
+    }
+
+    private static long[] negate(long[] a) {
+        return new long[] {-a[0], -a[1], -a[2]};
+    }
+
+    private static long dot(long[] a, long[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    private static boolean isZero(long[] a) {
+        return a[0] == 0 && a[1] == 0 && a[2] == 0;
+    }
+
+    static class Shape extends SpanShape {
+        private final long[] planes;
+        /**
+         * Отрезок проекции оболочки на плоскость XZ для каждого столбца X, в локальных координатах Z.
+         */
+        private final int[] columnFrom, columnTo;
+
+        /**
+         * @param projection Вершины двумерной оболочки проекции точек на плоскость XZ по порядку обхода.
+         */
+        Shape(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, List<long[]> planes,
+              long[][] vertices, int[] projection) {
+            super(minX, minY, minZ, maxX, maxY, maxZ);
+
+            this.planes = new long[planes.size() * 4];
+
+            for (int i = 0; i < planes.size(); i++) {
+                System.arraycopy(planes.get(i), 0, this.planes, i * 4, 4);
+            }
+
+            this.columnFrom = new int[maxX - minX + 1];
+            this.columnTo = new int[this.columnFrom.length];
+
+            for (int x = 0; x < this.columnFrom.length; x++) {
+                projectColumn(x, vertices, projection);
+            }
+        }
+
+        /**
+         * Пересекает прямую {@code x} с выпуклым многоугольником проекции: концы отрезка - наименьшее и наибольшее
+         * пересечение с рёбрами, округлённые внутрь до целых.
+         */
+        private void projectColumn(int x, long[][] vertices, int[] projection) {
+            long from = Long.MAX_VALUE, to = Long.MIN_VALUE;
+
+            for (int i = 0; i < projection.length; i++) {
+                long[] first = vertices[projection[i]], second = vertices[projection[(i + 1) % projection.length]];
+                long x1 = first[0], z1 = first[2];
+                long x2 = second[0], z2 = second[2];
+
+                if (x < Math.min(x1, x2) || x > Math.max(x1, x2)) {
+                    continue;
+                }
+
+                if (x1 == x2) {
+                    from = Math.min(from, Math.min(z1, z2));
+                    to = Math.max(to, Math.max(z1, z2));
+                    continue;
+                }
+
+                long denominator = x2 - x1;
+                long numerator = z1 * denominator + (x - x1) * (z2 - z1);
+
+                if (denominator < 0) {
+                    denominator = -denominator;
+                    numerator = -numerator;
+                }
+
+                from = Math.min(from, ceilDiv(numerator, denominator));
+                to = Math.max(to, Math.floorDiv(numerator, denominator));
+            }
+
+            this.columnFrom[x] = from <= to ? (int) from : 1;
+            this.columnTo[x] = from <= to ? (int) to : 0;
+        }
+
+        /**
+         * Каждая плоскость с ненулевым коэффициентом при Z ограничивает отрезок сверху или снизу,
+         * остальные либо пропускают всю строку, либо отсекают её целиком.
+         */
+        @Override
+        public int getSpans(int x, int y, int[] spans) {
+            long localX = x - this.getMinX();
+            long localY = y - this.getMinY();
+            long from = 0;
+            long to = this.getMaxZ() - this.getMinZ();
+
+            for (int i = 0; i < this.planes.length && from <= to; i += 4) {
+                long a = this.planes[i], b = this.planes[i + 1], c = this.planes[i + 2], d = this.planes[i + 3];
+                long remaining = d - a * localX - b * localY;
+
+                if (c > 0) {
+                    to = Math.min(to, Math.floorDiv(remaining, c));
+                } else if (c < 0) {
+                    from = Math.max(from, ceilDiv(-remaining, -c));
+                } else if (remaining < 0) {
+                    return 0;
+                }
+            }
+
+            if (from > to) {
+                return 0;
+            }
+
+            spans[0] = (int) (this.getMinZ() + from);
+            spans[1] = (int) (this.getMinZ() + to);
+            return 1;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z, int[] spans) {
+            if (x < this.getMinX() || x > this.getMaxX() || y < this.getMinY() || y > this.getMaxY()
+                    || z < this.getMinZ() || z > this.getMaxZ()) {
+                return false;
+            }
+
+            long localX = x - this.getMinX(), localY = y - this.getMinY(), localZ = z - this.getMinZ();
+
+            for (int i = 0; i < this.planes.length; i += 4) {
+                if (this.planes[i] * localX + this.planes[i + 1] * localY + this.planes[i + 2] * localZ > this.planes[i + 3]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Отрезок столбца берётся из проекции оболочки на плоскость XZ, посчитанной при создании. У тонких наклонных
+         * оболочек он может захватить отдельные столбцы без блоков, но никогда не пропускает столбцы с блоками.
+         */
+        @Override
+        public int getColumnSpans(int x, int[] spans) {
+            int from = this.columnFrom[x - this.getMinX()];
+            int to = this.columnTo[x - this.getMinX()];
+
+            if (from > to) {
+                return 0;
+            }
+
+            spans[0] = this.getMinZ() + from;
+            spans[1] = this.getMinZ() + to;
+            return 1;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package net.limemc.fbp.api.region.types;
 
+import net.limemc.fbp.api.region.BlockVisitor;
 import net.limemc.fbp.api.region.Point;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
@@ -8,9 +9,14 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
+ * Тип территории. Реализация исправляет точки через {@link #fixTerritory(Point[])} и строит по ним геометрию
+ * через {@link #compile(Point[])}; остальные методы по умолчанию работают с этой геометрией.
+ *
  * @author Dwyur
  */
 public interface ITerritory {
@@ -21,7 +27,10 @@ public interface ITerritory {
      * @param location Локация для проверки.
      * @return {@code true}, если локация находится внутри территории, иначе {@code false}.
      */
-    boolean isLocationInside(Point[] points, Location location);
+    default boolean isLocationInside(Point[] points, Location location) {
+        SpanShape shape = this.compile(points);
+        return shape != null && SpanTerritory.isLocationInside(shape, points[0].getWorld(), location);
+    }
 
 
     /**
@@ -31,7 +40,10 @@ public interface ITerritory {
      * @param chunk Чанк для проверки.
      * @return {@code true}, если чанк находится внутри территории, иначе {@code false}.
      */
-    boolean isChunkInside(Point[] points, Chunk chunk);
+    default boolean isChunkInside(Point[] points, Chunk chunk) {
+        SpanShape shape = this.compile(points);
+        return shape != null && SpanTerritory.isChunkInside(shape, points[0].getWorld(), chunk);
+    }
 
     /**
      * Исправляет территорию, определенную массивом точек, если это необходимо.
@@ -46,7 +58,25 @@ public interface ITerritory {
      * @param points Массив точек, определяющих территорию.
      * @return Коллекция сущностей.
      */
-    Collection<Entity> getEntitiesInTerritory(Point[] points);
+    default Collection<Entity> getEntitiesInTerritory(Point[] points) {
+        SpanShape shape = this.compile(points);
+        return shape != null ? SpanTerritory.getEntitiesInTerritory(shape, points[0].getWorld()) : Collections.emptyList();
+    }
+
+    /**
+     * Передаёт в {@code consumer} сущности, находящиеся в территории, определенной массивом точек, без создания
+     * промежуточных коллекций. Обходятся только сущности загруженных чанков, которые задевает территория.
+     *
+     * @param points Массив точек, определяющих территорию.
+     * @param consumer Получатель сущностей.
+     */
+    default void forEachEntity(Point[] points, Consumer<Entity> consumer) {
+        SpanShape shape = this.compile(points);
+
+        if (shape != null) {
+            SpanTerritory.forEachEntity(shape, points[0].getWorld(), consumer);
+        }
+    }
 
     /**
      * Устанавливает биом для территории, определенной массивом точек.
@@ -55,7 +85,13 @@ public interface ITerritory {
      * @param biome Биом для установки.
      */
     @Deprecated
-    void setTerritoryBiome(Point[] points, Biome biome);
+    default void setTerritoryBiome(Point[] points, Biome biome) {
+        SpanShape shape = this.compile(points);
+
+        if (shape != null) {
+            SpanTerritory.setTerritoryBiome(shape, points[0].getWorld(), biome);
+        }
+    }
 
     /**
      * Возвращает список координат чанков, которые попадают в территорию, определенную массивом точек.
@@ -63,16 +99,22 @@ public interface ITerritory {
      * @param points Массив точек, определяющих территорию.
      * @return Список массивов координат чанков (x, z).
      */
-    List<int[]> getTerritoryChunkCoordinates(Point[] points);
+    default List<int[]> getTerritoryChunkCoordinates(Point[] points) {
+        SpanShape shape = this.compile(points);
+        return shape != null ? SpanTerritory.getTerritoryChunkCoordinates(shape) : Collections.emptyList();
+    }
 
 
     /**
      * Возвращает общее количество блоков в территории, определенной массивом точек.
      *
      * @param points Массив точек, определяющих территорию.
-     * @return Количество блоков в территории.
+     * @return Количество блоков в территории или {@link Integer#MAX_VALUE}, если оно не помещается в {@code int}.
      */
-    int getTerritoryBlocksCount(Point[] points);
+    default int getTerritoryBlocksCount(Point[] points) {
+        SpanShape shape = this.compile(points);
+        return shape != null ? (int) Math.min(Integer.MAX_VALUE, shape.getBlocksCount()) : 0;
+    }
 
     /**
      * Возвращает список блоков в территории, определенной массивом точек.
@@ -80,5 +122,32 @@ public interface ITerritory {
      * @param points Массив точек, определяющих территорию.
      * @return Список блоков в территории.
      */
-    List<Block> getTerritoryBlocks(Point[] points);
+    default List<Block> getTerritoryBlocks(Point[] points) {
+        SpanShape shape = this.compile(points);
+        return shape != null ? SpanTerritory.getTerritoryBlocks(shape, points[0].getWorld()) : Collections.emptyList();
+    }
+
+    /**
+     * Обходит все блоки территории, определенной массивом точек, не создавая объектов на каждый блок.
+     * Блоки перечисляются по чанкам, а внутри чанка - по секциям снизу вверх.
+     *
+     * @param points Массив точек, определяющих территорию.
+     * @param visitor Получатель координат блоков.
+     */
+    default void forEachBlock(Point[] points, BlockVisitor visitor) {
+        SpanShape shape = this.compile(points);
+
+        if (shape != null) {
+            SpanTerritory.forEachBlock(shape, visitor);
+        }
+    }
+
+    /**
+     * Строит геометрию территории, определенной массивом точек, в виде отрезков по оси Z.
+     * Через неё территории объединяются в {@link CompositeShape}.
+     *
+     * @param points Массив точек, определяющих территорию.
+     * @return Геометрия или {@code null}, если точек недостаточно.
+     */
+    SpanShape compile(Point[] points);
 }
@@ -0,0 +1,232 @@
+package net.limemc.fbp.api.region.types;
+
+import net.limemc.fbp.api.region.Point;
+
+import java.util.Arrays;
+
+/**
+ * Реализация интерфейса {@link ITerritory} для вытянутого по высоте многоугольника. Вершины многоугольника -
+ * координаты X и Z точек в порядке обхода, многоугольник может быть невыпуклым. По высоте территория занимает
+ * слои от наименьшей до наибольшей Y среди точек. Блок находится внутри, если его координаты X и Z лежат внутри
+ * многоугольника или на его границе.
+ */
+public class PolygonTerritory extends SpanTerritory {
+
+    /**
+     * Вершины многоугольника задаются в порядке обхода, поэтому точки не изменяются.
+     * @param points Вершины многоугольника.
+     */
+    @Override
+    public void fixTerritory(Point[] points) {
+    }
+
+    @Override
+    public SpanShape compile(Point[] points) {
+        if (points == null || points.length < 3) {
+            return null;
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        for (Point point : points) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            minZ = Math.min(minZ, point.getZ());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+            maxZ = Math.max(maxZ, point.getZ());
+        }
+
+        // Вершины хранятся относительно угла, чтобы произведения координат не переполнялись
+        long[] vertexX = new long[points.length];
+        long[] vertexZ = new long[points.length];
+
+        for (int i = 0; i < points.length; i++) {
+            vertexX[i] = points[i].getX() - minX;
+            vertexZ[i] = points[i].getZ() - minZ;
+        }
+
+        return new Shape(minX, minY, minZ, maxX, maxY, maxZ, vertexX, vertexZ);
+    }
+
+    static class Shape extends SpanShape {
+        /**
+         * Отрезки по Z для каждого столбца X; одинаковы для всех слоёв по Y.
+         */
+        private final int[][] columns;
+        private final int maxSpans;
+
+        Shape(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, long[] vertexX, long[] vertexZ) {
+            super(minX, minY, minZ, maxX, maxY, maxZ);
+
+            this.columns = new int[maxX - minX + 1][];
+
+            int maxSpans = 1;
+            for (int x = 0; x < this.columns.length; x++) {
+                int[] spans = rasterize(x, vertexX, vertexZ);
+
+                for (int i = 0; i < spans.length; i++) {
+                    spans[i] += minZ;
+                }
+
+                this.columns[x] = spans;
+                maxSpans = Math.max(maxSpans, spans.length >> 1);
+            }
+
+            this.maxSpans = maxSpans;
+        }
+
+        @Override
+        public int getMaxSpans() {
+            return this.maxSpans;
+        }
+
+        @Override
+        public int getSpans(int x, int y, int[] spans) {
+            return this.getColumnSpans(x, spans);
+        }
+
+        @Override
+        public int getColumnSpans(int x, int[] spans) {
+            int[] column = this.columns[x - this.getMinX()];
+
+            System.arraycopy(column, 0, spans, 0, column.length);
+            return column.length >> 1;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z, int[] spans) {
+            if (x < this.getMinX() || x > this.getMaxX() || y < this.getMinY() || y > this.getMaxY()) {
+                return false;
+            }
+
+            int[] column = this.columns[x - this.getMinX()];
+
+            for (int i = 0; i < column.length; i += 2) {
+                if (z >= column[i] && z <= column[i + 1]) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public long getBlocksCount() {
+            long count = 0;
+
+            for (int[] column : this.columns) {
+                for (int i = 0; i < column.length; i += 2) {
+                    count += column[i + 1] - column[i] + 1;
+                }
+            }
+
+            return count * (this.getMaxY() - this.getMinY() + 1);
+        }
+
+        /**
+         * Отрезки столбца {@code x} по правилу чёт-нечет. Пересечение с ребром учитывается, если {@code x}
+         * лежит в полуинтервале {@code [min(x1, x2), max(x1, x2))}, поэтому вершина считается один раз.
+         * Блоки на самих рёбрах добавляются отдельно, после чего отрезки сортируются и склеиваются.
+         */
+        private static int[] rasterize(long x, long[] vertexX, long[] vertexZ) {
+            int vertices = vertexX.length;
+
+            double[] crossings = new double[vertices];
+            long[] crossingFrom = new long[vertices];
+            long[] crossingTo = new long[vertices];
+            int crossingsCount = 0;
+
+            long[] spans = new long[vertices * 4];
+            int spansCount = 0;
+
+            for (int i = 0; i < vertices; i++) {
+                int next = (i + 1) % vertices;
+                long x1 = vertexX[i], z1 = vertexZ[i];
+                long x2 = vertexX[next], z2 = vertexZ[next];
+
+                if (x < Math.min(x1, x2) || x > Math.max(x1, x2)) {
+                    continue;
+                }
+
+                if (x1 == x2) {
+                    spans[spansCount++] = Math.min(z1, z2);
+                    spans[spansCount++] = Math.max(z1, z2);
+                    continue;
+                }
+
+                long denominator = x2 - x1;
+                long numerator = z1 * denominator + (x - x1) * (z2 - z1);
+
+                if (denominator < 0) {
+                    denominator = -denominator;
+                    numerator = -numerator;
+                }
+
+                if (numerator % denominator == 0) {
+                    spans[spansCount++] = numerator / denominator;
+                    spans[spansCount++] = numerator / denominator;
+                }
+
+                if (x < Math.max(x1, x2)) {
+                    // Вставка с сортировкой: рёбер немного, а пересечений в столбце ещё меньше
+                    double crossing = (double) numerator / denominator;
+                    int index = crossingsCount++;
+
+                    while (index > 0 && crossings[index - 1] > crossing) {
+                        crossings[index] = crossings[index - 1];
+                        crossingFrom[index] = crossingFrom[index - 1];
+                        crossingTo[index] = crossingTo[index - 1];
+                        index--;
+                    }
+
+                    crossings[index] = crossing;
+                    crossingFrom[index] = ceilDiv(numerator, denominator);
+                    crossingTo[index] = Math.floorDiv(numerator, denominator);
+                }
+            }
+
+            for (int i = 0; i + 1 < crossingsCount; i += 2) {
+                spans[spansCount++] = crossingFrom[i];
+                spans[spansCount++] = crossingTo[i + 1];
+            }
+
+            return merge(spans, spansCount);
+        }
+
+        /**
+         * Сортирует отрезки по началу и склеивает пересекающиеся и соседние. Координаты отрезков локальные
+         * и неотрицательные, поэтому пара упаковывается в {@code long} и сортируется без объектов.
+         */
+        private static int[] merge(long[] spans, int length) {
+            long[] packed = new long[length >> 1];
+            int count = 0;
+
+            for (int i = 0; i < length; i += 2) {
+                if (spans[i] <= spans[i + 1]) {
+                    packed[count++] = spans[i] << 32 | spans[i + 1];
+                }
+            }
+
+            Arrays.sort(packed, 0, count);
+
+            int[] result = new int[count * 2];
+            int size = 0;
+
+            for (int i = 0; i < count; i++) {
+                int from = (int) (packed[i] >>> 32);
+                int to = (int) packed[i];
+
+                if (size > 0 && from <= result[size - 1] + 1) {
+                    result[size - 1] = Math.max(result[size - 1], to);
+                } else {
+                    result[size++] = from;
+                    result[size++] = to;
+                }
+            }
+
+            return Arrays.copyOf(result, size);
+        }
+    }
+}
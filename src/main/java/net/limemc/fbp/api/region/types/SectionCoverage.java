@@ -0,0 +1,19 @@
+package net.limemc.fbp.api.region.types;
+
+/**
+ * Положение секции чанка (16x16x16 блоков) относительно территории.
+ */
+public enum SectionCoverage {
+    /**
+     * Все блоки секции внутри территории.
+     */
+    INSIDE,
+    /**
+     * Ни одного блока секции внутри территории.
+     */
+    OUTSIDE,
+    /**
+     * Часть блоков секции внутри территории, их нужно перебирать по отрезкам.
+     */
+    PARTIAL
+}
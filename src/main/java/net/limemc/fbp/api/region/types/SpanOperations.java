@@ -0,0 +1,105 @@
+package net.limemc.fbp.api.region.types;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Операции над списками отрезков по Z. Список - пары {@code from, to} (включительно), отсортированные
+ * по возрастанию и не пересекающиеся. Выходной массив не должен совпадать с входными.
+ */
+@UtilityClass
+public class SpanOperations {
+
+    /**
+     * Объединение двух списков; пересекающиеся и соседние отрезки склеиваются.
+     * @return Количество отрезков в {@code out}.
+     */
+    public int union(int[] a, int aCount, int[] b, int bCount, int[] out) {
+        int i = 0, j = 0, size = 0;
+
+        while (i < aCount || j < bCount) {
+            int from, to;
+
+            if (j >= bCount || (i < aCount && a[i << 1] <= b[j << 1])) {
+                from = a[i << 1];
+                to = a[i << 1 | 1];
+                i++;
+            } else {
+                from = b[j << 1];
+                to = b[j << 1 | 1];
+                j++;
+            }
+
+            if (size > 0 && from <= out[(size << 1) - 1] + 1L) {
+                out[(size << 1) - 1] = Math.max(out[(size << 1) - 1], to);
+            } else {
+                out[size << 1] = from;
+                out[size << 1 | 1] = to;
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Пересечение двух списков.
+     * @return Количество отрезков в {@code out}.
+     */
+    public int intersect(int[] a, int aCount, int[] b, int bCount, int[] out) {
+        int i = 0, j = 0, size = 0;
+
+        while (i < aCount && j < bCount) {
+            int from = Math.max(a[i << 1], b[j << 1]);
+            int to = Math.min(a[i << 1 | 1], b[j << 1 | 1]);
+
+            if (from <= to) {
+                out[size << 1] = from;
+                out[size << 1 | 1] = to;
+                size++;
+            }
+
+            if (a[i << 1 | 1] < b[j << 1 | 1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Разность: отрезки {@code a} без блоков из {@code b}.
+     * @return Количество отрезков в {@code out}.
+     */
+    public int subtract(int[] a, int aCount, int[] b, int bCount, int[] out) {
+        int j = 0, size = 0;
+
+        for (int i = 0; i < aCount; i++) {
+            long from = a[i << 1];
+            long to = a[i << 1 | 1];
+
+            while (j < bCount && b[j << 1 | 1] < from) {
+                j++;
+            }
+
+            for (int k = j; k < bCount && b[k << 1] <= to && from <= to; k++) {
+                if (b[k << 1] > from) {
+                    out[size << 1] = (int) from;
+                    out[size << 1 | 1] = b[k << 1] - 1;
+                    size++;
+                }
+
+                from = Math.max(from, b[k << 1 | 1] + 1L);
+            }
+
+            if (from <= to) {
+                out[size << 1] = (int) from;
+                out[size << 1 | 1] = (int) to;
+                size++;
+            }
+        }
+
+        return size;
+    }
+}
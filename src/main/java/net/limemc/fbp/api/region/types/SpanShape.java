@@ -0,0 +1,208 @@
+package net.limemc.fbp.api.region.types;
+
+import lombok.Getter;
+
+/**
+ * Геометрия территории, разложенная на отрезки по оси Z. Для каждой пары (x, y) фигура отдаёт отрезки
+ * {@code [fromZ, toZ]}, которые целиком лежат внутри неё, поэтому обход и подсчёт блоков не проверяют
+ * каждый блок ограничивающего параллелепипеда.
+ */
+@Getter
+public abstract class SpanShape {
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+
+    protected SpanShape(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * @return Наибольшее количество отрезков, которое может вернуть {@link #getSpans(int, int, int[])}
+     * или {@link #getColumnSpans(int, int[])}.
+     */
+    public int getMaxSpans() {
+        return 1;
+    }
+
+    /**
+     * Записывает отрезки блоков по Z для строки (x, y) парами {@code from, to} (включительно) по возрастанию.
+     * Координаты x и y должны лежать в пределах границ фигуры.
+     *
+     * @param spans Массив длиной не меньше {@code getMaxSpans() * 2}.
+     * @return Количество отрезков.
+     */
+    public abstract int getSpans(int x, int y, int[] spans);
+
+    /**
+     * То же, что {@link #getSpans(int, int, int[])}, но для проекции фигуры на плоскость XZ: блок (x, z) попадает
+     * в отрезок, если внутри фигуры есть хотя бы один блок с такими x и z. Отрезки могут захватывать лишние столбцы,
+     * но не пропускают ни одного столбца с блоками, поэтому подходят для поиска чанков.
+     */
+    public abstract int getColumnSpans(int x, int[] spans);
+
+    /**
+     * @return {@code true}, если у фигуры пустые границы, например у пересечения непересекающихся территорий.
+     */
+    public boolean isEmpty() {
+        return this.minX > this.maxX || this.minY > this.maxY || this.minZ > this.maxZ;
+    }
+
+    /**
+     * Определяет положение секции относительно фигуры. Реализация по умолчанию проверяет 256 строк секции
+     * по отрезкам, без перебора блоков; фигуры, для которых ответ известен сразу, переопределяют метод.
+     *
+     * @param sectionX Координата X секции (X блока, делённая на 16).
+     * @param sectionY Координата Y секции.
+     * @param sectionZ Координата Z секции.
+     */
+    public SectionCoverage getSectionCoverage(int sectionX, int sectionY, int sectionZ) {
+        SectionCoverage bounds = this.getBoundsCoverage(sectionX, sectionY, sectionZ);
+
+        if (bounds == SectionCoverage.OUTSIDE) {
+            return bounds;
+        }
+
+        int minZ = sectionZ << 4;
+        int maxZ = minZ | 15;
+        int fromX = Math.max(this.minX, sectionX << 4), toX = Math.min(this.maxX, sectionX << 4 | 15);
+        int fromY = Math.max(this.minY, sectionY << 4), toY = Math.min(this.maxY, sectionY << 4 | 15);
+
+        boolean all = bounds == SectionCoverage.INSIDE;
+        boolean any = false;
+        int[] spans = new int[this.getMaxSpans() * 2];
+
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                int count = this.getSpans(x, y, spans);
+                boolean full = false;
+
+                for (int i = 0; i < count; i++) {
+                    int from = spans[i << 1], to = spans[i << 1 | 1];
+
+                    if (from <= maxZ && to >= minZ) {
+                        any = true;
+                        full |= from <= minZ && to >= maxZ;
+                    }
+                }
+
+                all &= full;
+
+                if (any && !all) {
+                    return SectionCoverage.PARTIAL;
+                }
+            }
+        }
+
+        return all ? SectionCoverage.INSIDE : any ? SectionCoverage.PARTIAL : SectionCoverage.OUTSIDE;
+    }
+
+    /**
+     * Положение секции относительно ограничивающего параллелепипеда фигуры.
+     */
+    protected SectionCoverage getBoundsCoverage(int sectionX, int sectionY, int sectionZ) {
+        int x = sectionX << 4, y = sectionY << 4, z = sectionZ << 4;
+
+        if (this.isEmpty() || x > this.maxX || x + 15 < this.minX || y > this.maxY || y + 15 < this.minY
+                || z > this.maxZ || z + 15 < this.minZ) {
+            return SectionCoverage.OUTSIDE;
+        }
+
+        if (x >= this.minX && x + 15 <= this.maxX && y >= this.minY && y + 15 <= this.maxY
+                && z >= this.minZ && z + 15 <= this.maxZ) {
+            return SectionCoverage.INSIDE;
+        }
+
+        return SectionCoverage.PARTIAL;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return this.contains(x, y, z, null);
+    }
+
+    /**
+     * То же, что {@link #contains(int, int, int)}, но с переиспользуемым буфером для отрезков,
+     * чтобы при проверке множества позиций не создавать массив на каждую.
+     *
+     * @param spans Массив длиной не меньше {@code getMaxSpans() * 2} или {@code null}.
+     */
+    public boolean contains(int x, int y, int z, int[] spans) {
+        if (x < this.minX || x > this.maxX || y < this.minY || y > this.maxY || z < this.minZ || z > this.maxZ) {
+            return false;
+        }
+
+        if (spans == null) {
+            spans = new int[this.getMaxSpans() * 2];
+        }
+
+        int count = this.getSpans(x, y, spans);
+
+        for (int i = 0; i < count; i++) {
+            if (z >= spans[i << 1] && z <= spans[i << 1 | 1]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Проверяет, есть ли у фигуры блоки в столбце чанка (без учёта высоты мира).
+     * Реализация по умолчанию проверяет проекцию 16 столбцов X чанка.
+     */
+    public boolean intersectsChunk(int chunkX, int chunkZ) {
+        int chunkMinZ = chunkZ << 4;
+        int chunkMaxZ = chunkMinZ | 15;
+        int fromX = Math.max(this.minX, chunkX << 4);
+        int toX = Math.min(this.maxX, chunkX << 4 | 15);
+
+        if (this.isEmpty() || chunkMinZ > this.maxZ || chunkMaxZ < this.minZ) {
+            return false;
+        }
+
+        int[] spans = new int[this.getMaxSpans() * 2];
+
+        for (int x = fromX; x <= toX; x++) {
+            int count = this.getColumnSpans(x, spans);
+
+            for (int i = 0; i < count; i++) {
+                if (spans[i << 1] <= chunkMaxZ && spans[i << 1 | 1] >= chunkMinZ) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return Точное количество блоков внутри фигуры.
+     */
+    public long getBlocksCount() {
+        int[] spans = new int[this.getMaxSpans() * 2];
+        long count = 0;
+
+        for (int x = this.minX; x <= this.maxX; x++) {
+            for (int y = this.minY; y <= this.maxY; y++) {
+                int spansCount = this.getSpans(x, y, spans);
+
+                for (int i = 0; i < spansCount; i++) {
+                    count += spans[i << 1 | 1] - spans[i << 1] + 1;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Наименьшее целое, не меньшее {@code value / divisor}; {@code divisor} должен быть положительным.
+     */
+    static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+}
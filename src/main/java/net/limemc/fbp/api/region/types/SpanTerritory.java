@@ -0,0 +1,290 @@
+package net.limemc.fbp.api.region.types;
+
+import lombok.NonNull;
+import net.limemc.fbp.api.region.BlockVisitor;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Основа для территорий произвольной формы. Наследник описывает фигуру через {@link SpanShape},
+ * а обход блоков, покрытие чанков, поиск сущностей и биомы строятся по её отрезкам методами этого класса.
+ */
+public abstract class SpanTerritory implements ITerritory {
+
+    /**
+     * Проверяет, находится ли позиция внутри фигуры из мира {@code world}.
+     */
+    public static boolean isLocationInside(@NonNull SpanShape shape, @NonNull World world, @NonNull Location pos) {
+        return world.equals(pos.getWorld()) && shape.contains(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
+    }
+
+    /**
+     * Проверяет, пересекается ли чанк с фигурой, см. {@link SpanShape#intersectsChunk(int, int)}.
+     * @param shape Геометрия территории.
+     * @param world Мир территории.
+     * @param chunk Чанк для проверки.
+     * @return True, если какая-либо часть чанка находится в пределах территории, false в противном случае.
+     */
+    public static boolean isChunkInside(@NonNull SpanShape shape, @NonNull World world, @NonNull Chunk chunk) {
+        if (!world.equals(chunk.getWorld())
+                || shape.getMinY() >= world.getMaxHeight() || shape.getMaxY() < world.getMinHeight()) {
+            return false;
+        }
+
+        return shape.intersectsChunk(chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Получает сущности внутри фигуры, см. {@link #forEachEntity(SpanShape, World, Consumer)}.
+     * @param shape Геометрия территории.
+     * @param world Мир территории.
+     * @return Коллекция сущностей в пределах территории.
+     */
+    public static Collection<Entity> getEntitiesInTerritory(@NonNull SpanShape shape, @NonNull World world) {
+        List<Entity> result = new ArrayList<>();
+        forEachEntity(shape, world, result::add);
+        return result;
+    }
+
+    /**
+     * Передаёт в {@code consumer} сущности, которые стоят в блоках фигуры. Обходятся только загруженные чанки,
+     * которые фигура задевает, и только их собственные сущности, без запроса по ограничивающему параллелепипеду.
+     * Позиция каждой сущности читается в один переиспользуемый {@link Location}, а проверка выполняется
+     * целочисленной математикой фигуры, поэтому промежуточные коллекции не создаются. Вызывать из основного потока.
+     *
+     * @param shape    Геометрия территории.
+     * @param world    Мир территории.
+     * @param consumer Получатель сущностей.
+     */
+    public static void forEachEntity(@NonNull SpanShape shape, @NonNull World world, @NonNull Consumer<Entity> consumer) {
+        if (shape.isEmpty() || shape.getMinY() >= world.getMaxHeight() || shape.getMaxY() < world.getMinHeight()) {
+            return;
+        }
+
+        Location location = new Location(world, 0, 0, 0);
+        int[] spans = new int[shape.getMaxSpans() * 2];
+
+        for (int chunkX = shape.getMinX() >> 4; chunkX <= shape.getMaxX() >> 4; chunkX++) {
+            for (int chunkZ = shape.getMinZ() >> 4; chunkZ <= shape.getMaxZ() >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ) || !shape.intersectsChunk(chunkX, chunkZ)) {
+                    continue;
+                }
+
+                Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+
+                if (!chunk.isEntitiesLoaded()) {
+                    continue;
+                }
+
+                for (Entity entity : chunk.getEntities()) {
+                    entity.getLocation(location);
+
+                    if (shape.contains(location.getBlockX(), location.getBlockY(), location.getBlockZ(), spans)) {
+                        consumer.accept(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Устанавливает биом для всех столбцов проекции фигуры на плоскость XZ.
+     * @param shape Геометрия территории.
+     * @param world Мир территории.
+     * @param biome Биом для установки.
+     */
+    @Deprecated
+    public static void setTerritoryBiome(@NonNull SpanShape shape, @NonNull World world, @NonNull Biome biome) {
+        int[] spans = new int[shape.getMaxSpans() * 2];
+
+        for (int x = shape.getMinX(); x <= shape.getMaxX(); x++) {
+            int count = shape.getColumnSpans(x, spans);
+
+            for (int i = 0; i < count; i++) {
+                for (int z = spans[i << 1]; z <= spans[i << 1 | 1]; z++) {
+                    world.setBiome(x, z, biome);
+                }
+            }
+        }
+    }
+
+    /**
+     * Получает координаты чанков, которые пересекаются с фигурой. Для каждого столбца X берутся отрезки проекции
+     * фигуры, и все чанки, которые они задевают, отмечаются сразу.
+     * @param shape Геометрия территории.
+     * @return Список координат чанков в виде массивов int [chunkX, chunkZ].
+     */
+    public static List<int[]> getTerritoryChunkCoordinates(@NonNull SpanShape shape) {
+        if (shape.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int minChunkZ = shape.getMinZ() >> 4;
+        boolean[] covered = new boolean[(shape.getMaxZ() >> 4) - minChunkZ + 1];
+        int[] spans = new int[shape.getMaxSpans() * 2];
+
+        List<int[]> chunks = new ArrayList<>();
+
+        for (int chunkX = shape.getMinX() >> 4; chunkX <= shape.getMaxX() >> 4; chunkX++) {
+            int toX = Math.min(shape.getMaxX(), chunkX << 4 | 15);
+            Arrays.fill(covered, false);
+
+            for (int x = Math.max(shape.getMinX(), chunkX << 4); x <= toX; x++) {
+                int count = shape.getColumnSpans(x, spans);
+
+                for (int i = 0; i < count; i++) {
+                    for (int chunkZ = spans[i << 1] >> 4; chunkZ <= spans[i << 1 | 1] >> 4; chunkZ++) {
+                        covered[chunkZ - minChunkZ] = true;
+                    }
+                }
+            }
+
+            for (int i = 0; i < covered.length; i++) {
+                if (covered[i]) {
+                    chunks.add(new int[] {chunkX, minChunkZ + i});
+                }
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Получает все блоки внутри фигуры.
+     * @param shape Геометрия территории.
+     * @param world Мир территории.
+     * @return Список блоков внутри территории.
+     */
+    public static List<Block> getTerritoryBlocks(@NonNull SpanShape shape, @NonNull World world) {
+        List<Block> list = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, shape.getBlocksCount()));
+
+        forEachBlock(shape, (x, y, z) -> list.add(world.getBlockAt(x, y, z)));
+        return list;
+    }
+
+    /**
+     * Обходит блоки фигуры по чанкам. Отрезки столбца чанков вычисляются один раз и затем только обрезаются
+     * по границам каждого чанка, поэтому стоимость обхода определяется количеством блоков внутри фигуры.
+     */
+    public static void forEachBlock(@NonNull SpanShape shape, @NonNull BlockVisitor visitor) {
+        if (shape.isEmpty()) {
+            return;
+        }
+
+        int minY = shape.getMinY();
+        int height = shape.getMaxY() - minY + 1;
+        int maxSpans = shape.getMaxSpans();
+
+        int[] spans = new int[16 * height * maxSpans * 2];
+        int[] counts = new int[16 * height];
+        int[] rowSpans = new int[maxSpans * 2];
+
+        for (int chunkX = shape.getMinX() >> 4; chunkX <= shape.getMaxX() >> 4; ++chunkX) {
+            int fromX = Math.max(shape.getMinX(), chunkX << 4);
+            int toX = Math.min(shape.getMaxX(), chunkX << 4 | 15);
+            int columnMinZ = Integer.MAX_VALUE;
+            int columnMaxZ = Integer.MIN_VALUE;
+
+            for (int y = 0; y < height; y++) {
+                for (int x = fromX; x <= toX; x++) {
+                    int row = y << 4 | x & 15;
+                    int count = counts[row] = shape.getSpans(x, minY + y, rowSpans);
+
+                    System.arraycopy(rowSpans, 0, spans, row * maxSpans * 2, count * 2);
+
+                    if (count > 0) {
+                        columnMinZ = Math.min(columnMinZ, rowSpans[0]);
+                        columnMaxZ = Math.max(columnMaxZ, rowSpans[(count << 1) - 1]);
+                    }
+                }
+            }
+
+            if (columnMinZ > columnMaxZ) {
+                continue;
+            }
+
+            for (int chunkZ = columnMinZ >> 4; chunkZ <= columnMaxZ >> 4; ++chunkZ) {
+                int chunkMinZ = chunkZ << 4;
+                int chunkMaxZ = chunkMinZ | 15;
+
+                for (int y = 0; y < height; y++) {
+                    for (int x = fromX; x <= toX; x++) {
+                        int row = y << 4 | x & 15;
+                        int offset = row * maxSpans * 2;
+
+                        for (int i = 0; i < counts[row]; i++) {
+                            int toZ = Math.min(chunkMaxZ, spans[offset + (i << 1 | 1)]);
+
+                            for (int z = Math.max(chunkMinZ, spans[offset + (i << 1)]); z <= toZ; ++z) {
+                                visitor.visit(x, minY + y, z);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Обходит блоки фигуры по секциям чанков в том же порядке, что и {@link #forEachBlock(SpanShape, BlockVisitor)}.
+     * Секции снаружи пропускаются, секции целиком внутри перебираются без отрезков, и только пограничные секции
+     * обходятся по отрезкам строк. Подходит фигурам, у которых {@link SpanShape#getSectionCoverage(int, int, int)}
+     * дешевле отрезков, например {@link CompositeShape}.
+     */
+    public static void forEachBlockBySection(@NonNull SpanShape shape, @NonNull BlockVisitor visitor) {
+        if (shape.isEmpty()) {
+            return;
+        }
+
+        int[] spans = new int[shape.getMaxSpans() * 2];
+
+        for (int chunkX = shape.getMinX() >> 4; chunkX <= shape.getMaxX() >> 4; ++chunkX) {
+            int fromX = Math.max(shape.getMinX(), chunkX << 4);
+            int toX = Math.min(shape.getMaxX(), chunkX << 4 | 15);
+
+            for (int chunkZ = shape.getMinZ() >> 4; chunkZ <= shape.getMaxZ() >> 4; ++chunkZ) {
+                int fromZ = Math.max(shape.getMinZ(), chunkZ << 4);
+                int toZ = Math.min(shape.getMaxZ(), chunkZ << 4 | 15);
+
+                for (int sectionY = shape.getMinY() >> 4; sectionY <= shape.getMaxY() >> 4; ++sectionY) {
+                    SectionCoverage coverage = shape.getSectionCoverage(chunkX, sectionY, chunkZ);
+
+                    if (coverage == SectionCoverage.OUTSIDE) {
+                        continue;
+                    }
+
+                    int fromY = Math.max(shape.getMinY(), sectionY << 4);
+                    int toY = Math.min(shape.getMaxY(), sectionY << 4 | 15);
+
+                    for (int y = fromY; y <= toY; ++y) {
+                        for (int x = fromX; x <= toX; ++x) {
+                            if (coverage == SectionCoverage.INSIDE) {
+                                for (int z = fromZ; z <= toZ; ++z) {
+                                    visitor.visit(x, y, z);
+                                }
+                                continue;
+                            }
+
+                            int count = shape.getSpans(x, y, spans);
+
+                            for (int i = 0; i < count; i++) {
+                                int spanTo = Math.min(toZ, spans[i << 1 | 1]);
+
+                                for (int z = Math.max(fromZ, spans[i << 1]); z <= spanTo; ++z) {
+                                    visitor.visit(x, y, z);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
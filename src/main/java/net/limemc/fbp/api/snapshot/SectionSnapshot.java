@@ -0,0 +1,171 @@
+package net.limemc.fbp.api.snapshot;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+
+import java.util.Arrays;
+
+/**
+ * Прежние блоки одной секции до изменения.
+ * Затронутые позиции хранятся битовой маской на 4096 бит, блоки - палитрой из различных состояний
+ * и упакованными индексами по {@code ceil(log2(palette))} бит на позицию. Если все позиции содержали
+ * один и тот же блок (например, воздух), индексы не хранятся вовсе.
+ */
+public class SectionSnapshot {
+    private static final ThreadLocal<IBlockData[]> SCRATCH = ThreadLocal.withInitial(() -> new IBlockData[4096]);
+    private static final ThreadLocal<Reference2IntOpenHashMap<IBlockData>> PALETTE_IDS = ThreadLocal.withInitial(() -> {
+        Reference2IntOpenHashMap<IBlockData> ids = new Reference2IntOpenHashMap<>();
+        ids.defaultReturnValue(-1);
+        return ids;
+    });
+
+    @Getter
+    private final int sectionX;
+    @Getter
+    private final int sectionY;
+    @Getter
+    private final int sectionZ;
+
+    private final long[] mask;
+    private final IBlockData[] palette;
+    private final long[] indices;
+    private final int bits;
+
+    @Getter
+    private final int size;
+
+    private SectionSnapshot(int sectionX, int sectionY, int sectionZ, long[] mask, IBlockData[] palette, long[] indices, int bits, int size) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+        this.mask = mask;
+        this.palette = palette;
+        this.indices = indices;
+        this.bits = bits;
+        this.size = size;
+    }
+
+    /**
+     * Запоминает текущие блоки секции для позиций из отрезка {@code [from, to)}.
+     * Можно вызывать из любого потока, если палитра не изменяется во время чтения.
+     */
+    public static SectionSnapshot capture(int sectionX, int sectionY, int sectionZ, @NonNull DataPaletteBlock<IBlockData> blocks,
+                                          @NonNull short[] positions, int from, int to) {
+        IBlockData[] scratch = SCRATCH.get();
+        long[] mask = new long[64];
+
+        for (int i = from; i < to; i++) {
+            short position = positions[i];
+            int index = position & 0xFFF;
+
+            mask[index >>> 6] |= 1L << index;
+            scratch[index] = blocks.a(PackedPositions.unpackX(position), PackedPositions.unpackY(position), PackedPositions.unpackZ(position));
+        }
+
+        Reference2IntOpenHashMap<IBlockData> paletteIds = PALETTE_IDS.get();
+        IBlockData[] palette = new IBlockData[4];
+        int paletteSize = 0;
+        int size = 0;
+        short[] entries = new short[to - from];
+        IBlockData lastBlock = null;
+        int lastEntry = 0;
+
+        paletteIds.clear();
+
+        for (int word = 0; word < 64; word++) {
+            for (long bitsLeft = mask[word]; bitsLeft != 0; bitsLeft &= bitsLeft - 1) {
+                int index = word << 6 | Long.numberOfTrailingZeros(bitsLeft);
+                IBlockData block = scratch[index];
+                scratch[index] = null;
+
+                // Соседние позиции чаще всего совпадают, повторный поиск по таблице не нужен
+                if (block != lastBlock) {
+                    lastEntry = paletteIds.getInt(block);
+
+                    if (lastEntry < 0) {
+                        if (paletteSize == palette.length) {
+                            palette = Arrays.copyOf(palette, paletteSize << 1);
+                        }
+
+                        lastEntry = paletteSize;
+                        palette[paletteSize++] = block;
+                        paletteIds.put(block, lastEntry);
+                    }
+
+                    lastBlock = block;
+                }
+
+                entries[size++] = (short) lastEntry;
+            }
+        }
+
+        int bits = paletteSize <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+        long[] indices = bits == 0 ? null : new long[(size * bits + 63) >>> 6];
+
+        for (int i = 0; bits != 0 && i < size; i++) {
+            long bitIndex = (long) i * bits;
+            int word = (int) (bitIndex >>> 6);
+            int offset = (int) (bitIndex & 63);
+
+            indices[word] |= (long) entries[i] << offset;
+
+            if (offset + bits > 64) {
+                indices[word + 1] |= (long) entries[i] >>> (64 - offset);
+            }
+        }
+
+        return new SectionSnapshot(sectionX, sectionY, sectionZ, mask,
+                Arrays.copyOf(palette, paletteSize), indices, bits, size);
+    }
+
+    public IBlockData[] getPalette() {
+        return this.palette;
+    }
+
+    /**
+     * Распаковывает позиции и индексы палитры в переданные массивы длиной не меньше {@link #getSize()}.
+     *
+     * @return Количество распакованных позиций.
+     */
+    public int unpack(@NonNull short[] positions, @NonNull short[] states) {
+        int valueMask = (1 << this.bits) - 1;
+        int i = 0;
+
+        for (int word = 0; word < 64; word++) {
+            for (long bitsLeft = this.mask[word]; bitsLeft != 0; bitsLeft &= bitsLeft - 1, i++) {
+                positions[i] = (short) (word << 6 | Long.numberOfTrailingZeros(bitsLeft));
+
+                if (this.bits == 0) {
+                    states[i] = 0;
+                    continue;
+                }
+
+                long bitIndex = (long) i * this.bits;
+                int index = (int) (bitIndex >>> 6);
+                int offset = (int) (bitIndex & 63);
+                long value = this.indices[index] >>> offset;
+
+                if (offset + this.bits > 64) {
+                    value |= this.indices[index + 1] << (64 - offset);
+                }
+
+                states[i] = (short) (value & valueMask);
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * @return Примерный объём памяти снимка в байтах.
+     */
+    public long getMemoryUsage() {
+        return 64L * Long.BYTES
+                + (long) this.palette.length * Integer.BYTES
+                + (this.indices != null ? (long) this.indices.length * Long.BYTES : 0L);
+    }
+}
@@ -0,0 +1,88 @@
+package net.limemc.fbp.api.snapshot;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.ChunkSection;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Снимок всех позиций, затронутых сессией, в порядке их записи.
+ * Восстанавливать снимки нужно в обратном порядке, чтобы при повторной записи той же позиции
+ * вернулся самый первый, исходный блок.
+ */
+public class SessionSnapshot {
+    @Getter
+    private final World world;
+
+    private final List<SectionSnapshot> sections = Collections.synchronizedList(new ArrayList<>());
+
+    public SessionSnapshot(@NonNull World world) {
+        this.world = world;
+    }
+
+    /**
+     * Запоминает прежние блоки перед записью отрезка позиций одной секции.
+     * Потокобезопасен: может вызываться из потоков, строящих секции.
+     */
+    public void capture(int sectionX, int sectionY, int sectionZ, @NonNull DataPaletteBlock<IBlockData> blocks,
+                        @NonNull short[] positions, int from, int to) {
+        this.sections.add(SectionSnapshot.capture(sectionX, sectionY, sectionZ, blocks, positions, from, to));
+    }
+
+    public void capture(int sectionX, int sectionY, int sectionZ, @NonNull ChunkSection section,
+                        @NonNull short[] positions, int from, int to) {
+        this.capture(sectionX, sectionY, sectionZ, section.h(), positions, from, to);
+    }
+
+    /**
+     * @return Снимки секций в порядке записи.
+     */
+    public List<SectionSnapshot> getSections() {
+        synchronized (this.sections) {
+            return new ArrayList<>(this.sections);
+        }
+    }
+
+    /**
+     * @return Координаты {@code {x, z}} чанков, затронутых снимком, без повторов.
+     */
+    public List<int[]> getChunkCoordinates() {
+        LongSet visited = new LongOpenHashSet();
+        List<int[]> coordinates = new ArrayList<>();
+
+        synchronized (this.sections) {
+            for (SectionSnapshot section : this.sections) {
+                if (visited.add(PackedPositions.chunkKey(section.getSectionX(), section.getSectionZ()))) {
+                    coordinates.add(new int[] {section.getSectionX(), section.getSectionZ()});
+                }
+            }
+        }
+
+        return coordinates;
+    }
+
+    public boolean isEmpty() {
+        return this.sections.isEmpty();
+    }
+
+    public long getMemoryUsage() {
+        long memory = 0;
+
+        synchronized (this.sections) {
+            for (SectionSnapshot section : this.sections) {
+                memory += section.getMemoryUsage();
+            }
+        }
+
+        return memory;
+    }
+}
@@ -0,0 +1,229 @@
+package net.limemc.fbp.api.template;
+
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.minecraft.world.level.block.state.IBlockData;
+import org.bukkit.Bukkit;
+import org.bukkit.craftbukkit.v1_20_R3.block.data.CraftBlockData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Шаблон, отображённый в память из файла формата {@link TemplateFormat}. При загрузке читаются только заголовок
+ * и подвал: общая палитра и указатель секций. Данные секций остаются в отображённом файле и читаются
+ * по одной при вставке, поэтому шаблон любого размера не разбирается в объекты целиком.
+ * <p>
+ * Чтение секций не потокобезопасно: каждый поток должен использовать свой {@link TemplateSection}.
+ */
+public class Template {
+    private final MappedByteBuffer buffer;
+
+    @Getter
+    private final int sizeX;
+    @Getter
+    private final int sizeY;
+    @Getter
+    private final int sizeZ;
+    @Getter
+    private final boolean deflated;
+
+    private final String[] blocks;
+    private final int[] sectionCoordinates;
+    private final long[] sectionOffsets;
+    private final int[] sectionLengths;
+
+    private IBlockData[] states;
+
+    private Template(MappedByteBuffer buffer) throws IOException {
+        ByteBuffer header = buffer.duplicate();
+        TemplateFormat.checkHeader(header);
+
+        this.buffer = buffer;
+        this.deflated = (header.getShort() & TemplateFormat.FLAG_DEFLATE) != 0;
+        this.sizeX = header.getInt();
+        this.sizeY = header.getInt();
+        this.sizeZ = header.getInt();
+
+        int sectionCount = header.getInt();
+        long footerOffset = header.getLong();
+
+        if (footerOffset < TemplateFormat.HEADER_SIZE || footerOffset > buffer.capacity()) {
+            throw new IOException("Corrupted template footer offset " + footerOffset);
+        }
+
+        ByteBuffer footer = buffer.duplicate().position((int) footerOffset);
+
+        this.blocks = new String[footer.getInt()];
+
+        for (int i = 0; i < this.blocks.length; i++) {
+            this.blocks[i] = TemplateFormat.readString(footer);
+        }
+
+        this.sectionCoordinates = new int[sectionCount * 3];
+        this.sectionOffsets = new long[sectionCount];
+        this.sectionLengths = new int[sectionCount];
+
+        for (int i = 0; i < sectionCount; i++) {
+            this.sectionCoordinates[i * 3] = footer.getInt();
+            this.sectionCoordinates[i * 3 + 1] = footer.getInt();
+            this.sectionCoordinates[i * 3 + 2] = footer.getInt();
+            this.sectionOffsets[i] = footer.getLong();
+            this.sectionLengths[i] = footer.getInt();
+
+            if (this.sectionOffsets[i] < TemplateFormat.HEADER_SIZE || this.sectionOffsets[i] + this.sectionLengths[i] > footerOffset) {
+                throw new IOException("Corrupted template section " + i);
+            }
+        }
+    }
+
+    /**
+     * Отображает файл шаблона в память. Файл должен быть меньше 2 ГБ.
+     *
+     * @throws IOException если файл не читается или не является шаблоном.
+     */
+    public static Template load(@NonNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Отображение остаётся действительным и после закрытия канала
+            return new Template(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getSectionCount() {
+        return this.sectionOffsets.length;
+    }
+
+    /**
+     * @return Строки {@link org.bukkit.block.data.BlockData} общей палитры.
+     */
+    public List<String> getBlocks() {
+        return List.of(this.blocks);
+    }
+
+    /**
+     * Общая палитра в виде состояний сервера. Строки разбираются один раз при первом вызове.
+     */
+    public synchronized IBlockData[] getStates() {
+        if (this.states == null) {
+            IBlockData[] states = new IBlockData[this.blocks.length];
+
+            for (int i = 0; i < states.length; i++) {
+                states[i] = ((CraftBlockData) Bukkit.createBlockData(this.blocks[i])).getState();
+            }
+
+            this.states = states;
+        }
+
+        return this.states;
+    }
+
+    /**
+     * Читает секцию {@code index} в {@code section}. Несжатые данные копируются из отображённого файла
+     * одним блоком, сжатые распаковываются во внутренний буфер {@code section}.
+     *
+     * @throws IllegalStateException если данные секции повреждены.
+     */
+    public void readSection(int index, @NonNull TemplateSection section) {
+        ByteBuffer data = this.buffer.duplicate()
+                .position((int) this.sectionOffsets[index])
+                .limit((int) this.sectionOffsets[index] + this.sectionLengths[index]);
+
+        if (this.deflated) {
+            data = this.inflate(data, section);
+        }
+
+        int paletteSize = data.getShort() & 0xFFFF;
+        int[] palette = section.getPaletteArray();
+
+        if (paletteSize == 0 || paletteSize > palette.length) {
+            throw new IllegalStateException("Corrupted template section " + index);
+        }
+
+        for (int i = 0; i < paletteSize; i++) {
+            int block = data.getInt();
+
+            if (block < TemplateFormat.NO_BLOCK || block >= this.blocks.length) {
+                throw new IllegalStateException("Corrupted template section " + index);
+            }
+
+            palette[i] = block;
+        }
+
+        if (data.get() != TemplateFormat.bitsFor(paletteSize)) {
+            throw new IllegalStateException("Corrupted template section " + index);
+        }
+
+        int bits = TemplateFormat.bitsFor(paletteSize);
+
+        data.asLongBuffer().get(section.getDataArray(), 0, TemplateFormat.dataLength(bits));
+        section.set(this.sectionCoordinates[index * 3], this.sectionCoordinates[index * 3 + 1],
+                this.sectionCoordinates[index * 3 + 2], paletteSize, bits);
+    }
+
+    private ByteBuffer inflate(ByteBuffer data, TemplateSection section) {
+        if (section.inflater == null) {
+            section.inflater = new Inflater();
+            section.inflated = new byte[TemplateFormat.sectionSize(4096)];
+        }
+
+        Inflater inflater = section.inflater;
+        inflater.reset();
+        inflater.setInput(data);
+
+        try {
+            int length = inflater.inflate(section.inflated);
+
+            if (!inflater.finished()) {
+                throw new IllegalStateException("Corrupted template section data");
+            }
+
+            return ByteBuffer.wrap(section.inflated, 0, length);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted template section data", e);
+        }
+    }
+
+    public int getSectionX(int index) {
+        return this.sectionCoordinates[index * 3];
+    }
+
+    public int getSectionY(int index) {
+        return this.sectionCoordinates[index * 3 + 1];
+    }
+
+    public int getSectionZ(int index) {
+        return this.sectionCoordinates[index * 3 + 2];
+    }
+
+    /**
+     * @return Координаты {@code {x, z}} чанков, которые займёт шаблон, вставленный углом в блок ({@code x}, {@code z}).
+     */
+    public List<int[]> getChunkCoordinates(int x, int z) {
+        LongLinkedOpenHashSet chunks = new LongLinkedOpenHashSet();
+        List<int[]> coordinates = new ArrayList<>();
+
+        for (int i = 0; i < this.getSectionCount(); i++) {
+            int minX = x + (this.getSectionX(i) << 4), minZ = z + (this.getSectionZ(i) << 4);
+
+            for (int chunkX = minX >> 4; chunkX <= minX + 15 >> 4; chunkX++) {
+                for (int chunkZ = minZ >> 4; chunkZ <= minZ + 15 >> 4; chunkZ++) {
+                    if (chunks.add(PackedPositions.chunkKey(chunkX, chunkZ))) {
+                        coordinates.add(new int[] {chunkX, chunkZ});
+                    }
+                }
+            }
+        }
+
+        return coordinates;
+    }
+}
@@ -0,0 +1,124 @@
+package net.limemc.fbp.api.template;
+
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import net.limemc.fbp.api.region.Point;
+import net.limemc.fbp.api.region.Territory;
+import net.limemc.fbp.api.region.TerritoryGeometry;
+import net.limemc.fbp.api.region.types.SpanTerritory;
+import net.limemc.fbp.api.workload.WorkloadRunnable;
+import net.limemc.fbp.api.workload.impl.ChunkPreloadWorkload;
+import net.limemc.fbp.api.workload.impl.TemplateExportWorkload;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Выгружает территорию в файл шаблона, читая палитры секций напрямую, без {@link org.bukkit.block.Block}
+ * на каждую позицию. Угол шаблона выравнивается по сетке секций, поэтому секции шаблона совпадают с секциями мира,
+ * а позиции вне территории записываются как {@link TemplateFormat#NO_BLOCK} и при вставке не изменяются.
+ * Шаблон, вставленный в возвращённый угол, восстанавливает территорию на прежнем месте.
+ */
+@Setter
+@Accessors(chain = true)
+public class TemplateExporter {
+    private final Territory territory;
+
+    /**
+     * Копировать секции по несколько чанков за тик через {@link net.limemc.fbp.api.workload.WorkloadScheduler},
+     * а кодировать и писать файл в фоновом потоке. Иначе вся выгрузка выполняется в текущем потоке.
+     */
+    private boolean async = true;
+
+    /**
+     * Сжимать данные секций.
+     */
+    private boolean deflate = true;
+
+    /**
+     * Загружать чанки территории тикетами до начала копирования, см. {@link ChunkPreloadWorkload}.
+     */
+    private boolean preloadChunks;
+
+    public TemplateExporter(@NonNull Territory territory) {
+        this.territory = territory;
+    }
+
+    /**
+     * Начинает выгрузку в файл, перезаписывая существующий. В асинхронном режиме метод нужно вызывать
+     * из основного потока, а результат завершится после записи файла в фоновом потоке.
+     *
+     * @return Угол шаблона с наименьшими координатами или ошибка записи.
+     * @throws IllegalStateException если территория пуста или лежит вне высоты мира.
+     */
+    public CompletableFuture<Point> export(@NonNull Path path) {
+        TerritoryGeometry geometry = this.territory.getGeometry();
+        World world = geometry.getWorld();
+
+        if (geometry.isEmpty()) {
+            throw new IllegalStateException("Territory is empty");
+        }
+
+        int minY = Math.max(geometry.getMinY(), world.getMinHeight());
+        int maxY = Math.min(geometry.getMaxY(), world.getMaxHeight() - 1);
+
+        if (minY > maxY) {
+            throw new IllegalStateException("Territory is outside of the world height");
+        }
+
+        Point origin = new Point(world, geometry.getMinX() & ~15, minY & ~15, geometry.getMinZ() & ~15);
+        List<int[]> chunks = SpanTerritory.getTerritoryChunkCoordinates(geometry.getShape());
+        TemplateWriter writer;
+
+        try {
+            writer = new TemplateWriter(path, geometry.getShape(), origin.getX(), origin.getY(), origin.getZ(),
+                    geometry.getMaxX() - origin.getX() + 1, maxY - origin.getY() + 1,
+                    geometry.getMaxZ() - origin.getZ() + 1, this.deflate);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        TemplateExportWorkload workload = new TemplateExportWorkload(world, geometry.getShape(), chunks, writer);
+        ChunkPreloadWorkload preload = this.preloadChunks ? new ChunkPreloadWorkload(world, chunks) : null;
+
+        if (this.async) {
+            WorkloadRunnable workloadRunnable = new WorkloadRunnable();
+
+            if (preload != null)
+                workloadRunnable.addWorkload(preload);
+
+            // Копии секций не зависят от чанков, поэтому тикеты снимаются, не дожидаясь записи файла
+            workloadRunnable.addWorkload(workload);
+
+            // Выполняется и после упавшей нагрузки: тикеты снимаются, а прерванная выгрузка завершается ошибкой
+            workloadRunnable.whenComplete(() -> {
+                try {
+                    if (preload != null)
+                        preload.release();
+                } finally {
+                    workload.abort();
+                }
+            });
+
+            workloadRunnable.schedule();
+        } else {
+            if (preload != null)
+                preload.compute();
+
+            try {
+                workload.compute();
+            } catch (RuntimeException ignored) {
+                // Ошибка уже передана в результат
+            } finally {
+                if (preload != null)
+                    preload.release();
+            }
+        }
+
+        return workload.getResult().thenApply(ignored -> origin);
+    }
+}
@@ -0,0 +1,141 @@
+package net.limemc.fbp.api.template;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичный формат шаблонов. Все числа записываются в порядке big-endian.
+ * <pre>
+ * Заголовок, {@link #HEADER_SIZE} байт:
+ *   int   magic ({@link #MAGIC})
+ *   short version ({@link #VERSION})
+ *   short flags ({@link #FLAG_DEFLATE})
+ *   int   sizeX, sizeY, sizeZ   размеры шаблона в блоках
+ *   int   sectionCount
+ *   long  footerOffset          смещение подвала от начала файла
+ *
+ * Данные секций, друг за другом (при {@link #FLAG_DEFLATE} каждая сжата отдельно):
+ *   short paletteSize
+ *   int[paletteSize]            индексы в общей палитре, {@link #NO_BLOCK} - позиция не входит в шаблон
+ *   byte  bits                  бит на позицию, 0 при палитре из одного блока
+ *   long[dataLength]            индексы палитры по {@code 64 / bits} значений в long без переноса между long,
+ *                               позиции в порядке {@code x << 8 | z << 4 | y}
+ *
+ * Подвал:
+ *   int   blockPaletteSize
+ *   (short length, byte[length] UTF-8)[blockPaletteSize]   общая палитра строк BlockData
+ *   (int sectionX, int sectionY, int sectionZ, long offset, int length)[sectionCount]
+ * </pre>
+ * Координаты секций отсчитываются от угла шаблона в секциях, {@code length} - размер данных секции в файле.
+ */
+@UtilityClass
+public class TemplateFormat {
+    public final int MAGIC = 0x46425054; // "FBPT"
+    public final short VERSION = 1;
+    public final short FLAG_DEFLATE = 1;
+    public final int HEADER_SIZE = 32;
+    public final int NO_BLOCK = -1;
+    public final int SECTION_INDEX_ENTRY_SIZE = 3 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * @return Количество бит на позицию для палитры из {@code paletteSize} элементов.
+     */
+    public int bitsFor(int paletteSize) {
+        return paletteSize <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+    }
+
+    /**
+     * @return Количество long для 4096 значений по {@code bits} бит без переноса между long.
+     */
+    public int dataLength(int bits) {
+        if (bits == 0) {
+            return 0;
+        }
+
+        int valuesPerLong = 64 / bits;
+        return (4096 + valuesPerLong - 1) / valuesPerLong;
+    }
+
+    /**
+     * @return Размер несжатых данных секции в байтах.
+     */
+    public int sectionSize(int paletteSize) {
+        return Short.BYTES + paletteSize * Integer.BYTES + 1 + dataLength(bitsFor(paletteSize)) * Long.BYTES;
+    }
+
+    /**
+     * Записывает несжатые данные секции.
+     *
+     * @param palette     Индексы в общей палитре.
+     * @param values      Индекс в {@code palette} для каждой из 4096 позиций.
+     */
+    public void writeSection(@NonNull ByteBuffer buffer, @NonNull int[] palette, int paletteSize, @NonNull short[] values) {
+        int bits = bitsFor(paletteSize);
+
+        buffer.putShort((short) paletteSize);
+
+        for (int i = 0; i < paletteSize; i++) {
+            buffer.putInt(palette[i]);
+        }
+
+        buffer.put((byte) bits);
+
+        if (bits == 0) {
+            return;
+        }
+
+        int valuesPerLong = 64 / bits;
+
+        for (int from = 0; from < 4096; from += valuesPerLong) {
+            long word = 0;
+
+            for (int i = 0, to = Math.min(valuesPerLong, 4096 - from); i < to; i++) {
+                word |= (long) values[from + i] << (i * bits);
+            }
+
+            buffer.putLong(word);
+        }
+    }
+
+    public void writeString(@NonNull ByteBuffer buffer, @NonNull String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    public String readString(@NonNull ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Размер строки в формате {@link #writeString(ByteBuffer, String)}.
+     */
+    public int stringSize(@NonNull String value) {
+        return Short.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Проверяет заголовок и сдвигает буфер за него.
+     *
+     * @throws IOException если файл не является шаблоном поддерживаемой версии.
+     */
+    void checkHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a template file");
+        }
+
+        short version = buffer.getShort();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported template version " + version);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.limemc.fbp.api.template;
+
+import lombok.Getter;
+
+import java.util.zip.Inflater;
+
+/**
+ * Прочитанные данные одной секции шаблона. Объект переиспользуется для всех секций при чтении через
+ * {@link Template#readSection(int, TemplateSection)}, поэтому его массивы создаются один раз на обход.
+ */
+public class TemplateSection {
+    @Getter
+    private int sectionX;
+    @Getter
+    private int sectionY;
+    @Getter
+    private int sectionZ;
+
+    private final int[] palette = new int[4096];
+    @Getter
+    private int paletteSize;
+
+    private final long[] data = new long[4096];
+    private int bits;
+    private int valuesPerLong;
+    private long valueMask;
+
+    Inflater inflater;
+    byte[] inflated;
+
+    void set(int sectionX, int sectionY, int sectionZ, int paletteSize, int bits) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+        this.paletteSize = paletteSize;
+        this.bits = bits;
+        this.valuesPerLong = bits == 0 ? 0 : 64 / bits;
+        this.valueMask = (1L << bits) - 1;
+    }
+
+    int[] getPaletteArray() {
+        return this.palette;
+    }
+
+    long[] getDataArray() {
+        return this.data;
+    }
+
+    /**
+     * @param position Позиция в секции в порядке {@code x << 8 | z << 4 | y}.
+     * @return Индекс в общей палитре шаблона или {@link TemplateFormat#NO_BLOCK}.
+     */
+    public int getBlock(int position) {
+        if (this.bits == 0) {
+            return this.palette[0];
+        }
+
+        long word = this.data[position / this.valuesPerLong];
+        return this.palette[(int) (word >>> (position % this.valuesPerLong * this.bits) & this.valueMask)];
+    }
+}
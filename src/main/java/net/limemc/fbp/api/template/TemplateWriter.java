@@ -0,0 +1,309 @@
+package net.limemc.fbp.api.template;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.region.types.SpanShape;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+import org.bukkit.craftbukkit.v1_20_R3.block.data.CraftBlockData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Записывает шаблон формата {@link TemplateFormat} в файл по секциям. Сначала на место заголовка пишутся нули,
+ * затем данные секций друг за другом по мере поступления, а {@link #finish()} дописывает подвал и только потом
+ * заголовок, поэтому недописанный файл не загрузится как шаблон.
+ * <p>
+ * В памяти остаются только общая палитра и указатель секций, по 24 байта на секцию, а буферы кодирования
+ * переиспользуются. Методы не потокобезопасны, но могут вызываться из любого потока: писатель не обращается к миру,
+ * а читает переданные ему копии палитр секций.
+ */
+public class TemplateWriter implements Closeable {
+    private final FileChannel channel;
+    private final SpanShape shape;
+    @Getter
+    private final int originX, originY, originZ;
+    @Getter
+    private final int sizeX, sizeY, sizeZ;
+    private final boolean deflate;
+
+    private final Reference2IntOpenHashMap<IBlockData> blockIds = new Reference2IntOpenHashMap<>();
+    private final List<String> blocks = new ArrayList<>();
+    private final Int2IntOpenHashMap localIds = new Int2IntOpenHashMap();
+
+    private final IntArrayList sectionCoordinates = new IntArrayList();
+    private final LongArrayList sectionOffsets = new LongArrayList();
+    private final IntArrayList sectionLengths = new IntArrayList();
+
+    private final int[] palette = new int[4096];
+    private final short[] values = new short[4096];
+    private final long[] inside = new long[64];
+    private final int[] spans;
+    private final ByteBuffer raw = ByteBuffer.allocate(TemplateFormat.sectionSize(4096));
+    private final ByteBuffer compressed;
+    private final Deflater deflater;
+
+    private long position = TemplateFormat.HEADER_SIZE;
+
+    /**
+     * Создаёт файл шаблона, перезаписывая существующий.
+     *
+     * @param shape   Фигура, блоки вне которой записываются как {@link TemplateFormat#NO_BLOCK}.
+     * @param originX Угол шаблона с наименьшими координатами, выровненный по сетке секций.
+     * @param deflate Сжимать данные каждой секции.
+     * @throws IOException если файл не создаётся.
+     */
+    public TemplateWriter(@NonNull Path path, @NonNull SpanShape shape, int originX, int originY, int originZ,
+                          int sizeX, int sizeY, int sizeZ, boolean deflate) throws IOException {
+        if (((originX | originY | originZ) & 15) != 0) {
+            throw new IllegalArgumentException("Template origin must be aligned to sections");
+        }
+
+        this.shape = shape;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.deflate = deflate;
+        this.spans = new int[shape.getMaxSpans() * 2];
+        this.blockIds.defaultReturnValue(TemplateFormat.NO_BLOCK);
+        this.localIds.defaultReturnValue(-1);
+
+        if (deflate) {
+            this.deflater = new Deflater();
+            this.compressed = ByteBuffer.allocate(this.raw.capacity() + 64);
+        } else {
+            this.deflater = null;
+            this.compressed = null;
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.write(ByteBuffer.allocate(TemplateFormat.HEADER_SIZE), 0);
+    }
+
+    public int getSectionCount() {
+        return this.sectionOffsets.size();
+    }
+
+    /**
+     * Кодирует и записывает секцию мира. Секции, в которых нет ни одного блока фигуры, пропускаются.
+     *
+     * @param states Палитра секции, например копия из {@link net.limemc.fbp.api.utility.BatchBlockChanger#copyStates}.
+     *               Не должна изменяться во время записи.
+     * @param full   Секция целиком внутри фигуры, и проверять каждую позицию не нужно.
+     */
+    public void writeSection(int sectionX, int sectionY, int sectionZ, @NonNull DataPaletteBlock<IBlockData> states,
+                             boolean full) throws IOException {
+        if (!full && !this.markInside(sectionX, sectionY, sectionZ)) {
+            return;
+        }
+
+        int paletteSize = this.encode(states, full);
+
+        if (paletteSize == 1 && this.palette[0] == TemplateFormat.NO_BLOCK) {
+            return;
+        }
+
+        this.raw.clear();
+        TemplateFormat.writeSection(this.raw, this.palette, paletteSize, this.values);
+        this.raw.flip();
+
+        long offset = this.position;
+        int length = this.deflate ? this.writeDeflated() : this.write(this.raw, offset);
+
+        this.position += length;
+        this.sectionCoordinates.add(sectionX - (this.originX >> 4));
+        this.sectionCoordinates.add(sectionY - (this.originY >> 4));
+        this.sectionCoordinates.add(sectionZ - (this.originZ >> 4));
+        this.sectionOffsets.add(offset);
+        this.sectionLengths.add(length);
+    }
+
+    /**
+     * Дописывает подвал и заголовок и закрывает файл.
+     */
+    public void finish() throws IOException {
+        int footerSize = Integer.BYTES + this.getSectionCount() * TemplateFormat.SECTION_INDEX_ENTRY_SIZE;
+
+        for (String block : this.blocks) {
+            footerSize += TemplateFormat.stringSize(block);
+        }
+
+        ByteBuffer footer = ByteBuffer.allocate(footerSize);
+        footer.putInt(this.blocks.size());
+
+        for (String block : this.blocks) {
+            TemplateFormat.writeString(footer, block);
+        }
+
+        for (int i = 0; i < this.getSectionCount(); i++) {
+            footer.putInt(this.sectionCoordinates.getInt(i * 3));
+            footer.putInt(this.sectionCoordinates.getInt(i * 3 + 1));
+            footer.putInt(this.sectionCoordinates.getInt(i * 3 + 2));
+            footer.putLong(this.sectionOffsets.getLong(i));
+            footer.putInt(this.sectionLengths.getInt(i));
+        }
+
+        this.write(footer.flip(), this.position);
+
+        ByteBuffer header = ByteBuffer.allocate(TemplateFormat.HEADER_SIZE);
+        header.putInt(TemplateFormat.MAGIC);
+        header.putShort(TemplateFormat.VERSION);
+        header.putShort(this.deflate ? TemplateFormat.FLAG_DEFLATE : (short) 0);
+        header.putInt(this.sizeX);
+        header.putInt(this.sizeY);
+        header.putInt(this.sizeZ);
+        header.putInt(this.getSectionCount());
+        header.putLong(this.position);
+
+        this.write(header.flip(), 0);
+        this.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.deflater != null) {
+            this.deflater.end();
+        }
+
+        this.channel.close();
+    }
+
+    /**
+     * Отмечает позиции секции внутри фигуры, запрашивая отрезки один раз на строку (x, y).
+     *
+     * @return {@code true}, если внутри есть хотя бы одна позиция.
+     */
+    private boolean markInside(int sectionX, int sectionY, int sectionZ) {
+        Arrays.fill(this.inside, 0L);
+
+        int minX = sectionX << 4, minY = sectionY << 4, minZ = sectionZ << 4;
+        int fromX = Math.max(minX, this.shape.getMinX()), toX = Math.min(minX | 15, this.shape.getMaxX());
+        int fromY = Math.max(minY, this.shape.getMinY()), toY = Math.min(minY | 15, this.shape.getMaxY());
+        boolean any = false;
+
+        for (int x = fromX; x <= toX; x++) {
+            for (int y = fromY; y <= toY; y++) {
+                int count = this.shape.getSpans(x, y, this.spans);
+
+                for (int i = 0; i < count; i++) {
+                    int from = Math.max(minZ, this.spans[i << 1]), to = Math.min(minZ | 15, this.spans[i << 1 | 1]);
+
+                    for (int z = from; z <= to; z++) {
+                        int index = PackedPositions.pack(x, y, z) & 0xFFF;
+                        this.inside[index >>> 6] |= 1L << index;
+                        any = true;
+                    }
+                }
+            }
+        }
+
+        return any;
+    }
+
+    /**
+     * Собирает палитру секции из индексов общей палитры и индексы палитры для каждой позиции.
+     *
+     * @return Размер палитры секции.
+     */
+    private int encode(DataPaletteBlock<IBlockData> states, boolean full) {
+        this.localIds.clear();
+
+        int paletteSize = 0;
+        IBlockData lastState = null;
+        short lastValue = 0;
+
+        for (int position = 0; position < 4096; position++) {
+            int block;
+
+            if (!full && (this.inside[position >>> 6] & 1L << position) == 0) {
+                block = TemplateFormat.NO_BLOCK;
+            } else {
+                IBlockData state = states.a(PackedPositions.unpackX((short) position),
+                        PackedPositions.unpackY((short) position), PackedPositions.unpackZ((short) position));
+
+                // Соседние позиции столбца чаще всего совпадают, повторный поиск по таблицам не нужен
+                if (state == lastState) {
+                    this.values[position] = lastValue;
+                    continue;
+                }
+
+                lastState = state;
+                block = this.getBlockId(state);
+            }
+
+            int value = this.localIds.get(block);
+
+            if (value < 0) {
+                value = paletteSize;
+                this.palette[paletteSize++] = block;
+                this.localIds.put(block, value);
+            }
+
+            this.values[position] = (short) value;
+
+            if (block != TemplateFormat.NO_BLOCK) {
+                lastValue = (short) value;
+            } else {
+                lastState = null;
+            }
+        }
+
+        return paletteSize;
+    }
+
+    private int getBlockId(IBlockData state) {
+        int id = this.blockIds.getInt(state);
+
+        if (id == TemplateFormat.NO_BLOCK) {
+            id = this.blocks.size();
+            this.blocks.add(CraftBlockData.fromData(state).getAsString());
+            this.blockIds.put(state, id);
+        }
+
+        return id;
+    }
+
+    private int writeDeflated() throws IOException {
+        this.deflater.reset();
+        this.deflater.setInput(this.raw);
+        this.deflater.finish();
+
+        int length = 0;
+
+        while (!this.deflater.finished()) {
+            this.compressed.clear();
+            this.deflater.deflate(this.compressed);
+            length += this.write(this.compressed.flip(), this.position + length);
+        }
+
+        return length;
+    }
+
+    private int write(ByteBuffer buffer, long offset) throws IOException {
+        int length = buffer.remaining();
+
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer, offset + length - buffer.remaining());
+        }
+
+        return length;
+    }
+}
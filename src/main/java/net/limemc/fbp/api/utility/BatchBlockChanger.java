@@ -0,0 +1,287 @@
+package net.limemc.fbp.api.utility;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.minecraft.core.BlockPosition;
+import net.minecraft.server.level.WorldServer;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.Chunk;
+import net.minecraft.world.level.chunk.ChunkSection;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+import net.minecraft.world.level.levelgen.HeightMap;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.craftbukkit.v1_20_R3.CraftWorld;
+import org.bukkit.craftbukkit.v1_20_R3.block.data.CraftBlockData;
+
+/**
+ * Пакетная запись блоков: каждая секция получается один раз,
+ * после чего все её позиции записываются в палитру одним циклом.
+ * Счётчики непустых и тикающих блоков секции обновляются при записи каждого блока, поэтому секцию
+ * не нужно пересчитывать целиком.
+ */
+@UtilityClass
+public class BatchBlockChanger {
+    private final IBlockData[] NO_PALETTE = new IBlockData[0];
+    /**
+     * Карты высот, которые сервер обновляет при обычной установке блока в загруженный чанк.
+     */
+    private final HeightMap.Type[] HEIGHTMAPS = {
+            HeightMap.Type.MOTION_BLOCKING, HeightMap.Type.MOTION_BLOCKING_NO_LEAVES,
+            HeightMap.Type.OCEAN_FLOOR, HeightMap.Type.WORLD_SURFACE
+    };
+
+    /**
+     * Значение в {@code columnTops} для столбца без записанных блоков.
+     */
+    public final int NO_COLUMN = Integer.MIN_VALUE;
+
+    /**
+     * Записывает отрезок позиций одной секции. Позиции упакованы через {@link PackedPositions#pack(int, int, int)}.
+     *
+     * @param states  Индексы в {@code palette} для каждой позиции или {@code null}, если палитра из одного блока.
+     * @param from    Индекс первой позиции (включительно).
+     * @param to      Индекс последней позиции (не включительно).
+     */
+    public void setBlocks(@NonNull World world, int sectionX, int sectionY, int sectionZ,
+                          @NonNull short[] positions, short[] states, int from, int to, @NonNull IBlockData[] palette,
+                          boolean applyPhysics, boolean removeTileEntity, @NonNull ChunkRefresher refresher) {
+        setBlocks(world, getSection(world, sectionX, sectionY, sectionZ), sectionX, sectionY, sectionZ,
+                positions, states, from, to, palette, applyPhysics, removeTileEntity, refresher);
+    }
+
+    /**
+     * То же, что {@link #setBlocks(World, int, int, int, short[], short[], int, int, IBlockData[], boolean, boolean, ChunkRefresher)},
+     * но для уже полученной секции.
+     */
+    public void setBlocks(@NonNull World world, @NonNull ChunkSection section, int sectionX, int sectionY, int sectionZ,
+                          @NonNull short[] positions, short[] states, int from, int to, @NonNull IBlockData[] palette,
+                          boolean applyPhysics, boolean removeTileEntity, @NonNull ChunkRefresher refresher) {
+        setSectionBlocks(((CraftWorld) world).getHandle(), section, sectionX, sectionY, sectionZ,
+                positions, states, from, to, palette, applyPhysics, removeTileEntity);
+        refresher.add(sectionX, sectionY, sectionZ, positions, from, to);
+    }
+
+    public IBlockData[] toPalette(@NonNull BlockData... blocks) {
+        if (blocks.length == 0) {
+            return NO_PALETTE;
+        }
+
+        IBlockData[] palette = new IBlockData[blocks.length];
+
+        for (int i = 0; i < blocks.length; i++) {
+            palette[i] = ((CraftBlockData) blocks[i]).getState();
+        }
+
+        return palette;
+    }
+
+    private void setSectionBlocks(@NonNull WorldServer worldServer, @NonNull ChunkSection section, int sectionX, int sectionY, int sectionZ,
+                                  short[] positions, short[] states, int from, int to, IBlockData[] palette,
+                                  boolean applyPhysics, boolean removeTileEntity) {
+        if (removeTileEntity && !worldServer.capturedTileEntities.isEmpty()) {
+            removeTileEntities(worldServer, sectionX, sectionY, sectionZ, positions, from, to);
+        }
+
+        // ChunkSection#setBlockState сам обновляет счётчики непустых и тикающих блоков по прежнему
+        // и новому блоку, поэтому полный пересчёт секции после записи не нужен
+        if (states == null) {
+            IBlockData block = palette[0];
+
+            for (int i = from; i < to; i++) {
+                short position = positions[i];
+                section.a(PackedPositions.unpackX(position), PackedPositions.unpackY(position), PackedPositions.unpackZ(position), block, applyPhysics);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                short position = positions[i];
+                section.a(PackedPositions.unpackX(position), PackedPositions.unpackY(position), PackedPositions.unpackZ(position), palette[states[i]], applyPhysics);
+            }
+        }
+    }
+
+    /**
+     * Возвращает секцию чанка по координатам секции. Незагруженный чанк будет загружен.
+     * Вызывать только из основного потока.
+     *
+     * @throws IllegalArgumentException если секция вне высоты мира.
+     */
+    public ChunkSection getSection(@NonNull World world, int sectionX, int sectionY, int sectionZ) {
+        int minSectionY = world.getMinHeight() >> 4;
+        int maxSectionY = (world.getMaxHeight() - 1) >> 4;
+
+        if (sectionY < minSectionY || sectionY > maxSectionY) {
+            throw new IllegalArgumentException("Section Y " + sectionY + " is outside of world height ["
+                    + minSectionY + ", " + maxSectionY + "]");
+        }
+
+        Chunk chunk = ((CraftWorld) world).getHandle().d(sectionX, sectionZ);
+        return chunk.d()[sectionY - minSectionY];
+    }
+
+    /**
+     * Копирует палитру секции. Копию можно заполнять в другом потоке, пока она не подставлена в чанк.
+     */
+    public DataPaletteBlock<IBlockData> copyStates(@NonNull ChunkSection section) {
+        return section.h().d(); // PalettedContainer#copy
+    }
+
+    /**
+     * Записывает позиции в палитру без блокировки. Палитра не должна быть доступна другим потокам во время записи.
+     *
+     * @param states Индексы в {@code palette} для каждой позиции или {@code null}, если палитра из одного блока.
+     */
+    public void writeStates(@NonNull DataPaletteBlock<IBlockData> blocks, @NonNull short[] positions, short[] states,
+                            int from, int to, @NonNull IBlockData[] palette) {
+        writeStates(SectionBlocks.unlocked(blocks), positions, states, from, to, palette);
+    }
+
+    /**
+     * Записывает позиции в секцию по индексам палитры, см. {@link #writeStates(DataPaletteBlock, short[], short[], int, int, IBlockData[])}.
+     */
+    public <T> void writeStates(@NonNull SectionBlocks<T> blocks, @NonNull short[] positions, short[] states,
+                                int from, int to, @NonNull T[] palette) {
+        if (states == null) {
+            T block = palette[0];
+
+            for (int i = from; i < to; i++) {
+                short position = positions[i];
+                blocks.set(PackedPositions.unpackX(position), PackedPositions.unpackY(position), PackedPositions.unpackZ(position), block);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                short position = positions[i];
+                blocks.set(PackedPositions.unpackX(position), PackedPositions.unpackY(position), PackedPositions.unpackZ(position), palette[states[i]]);
+            }
+        }
+    }
+
+    /**
+     * Отбрасывает позиции, в которых уже стоит целевой блок, и копирует остальные в {@code outPositions}/{@code outStates}.
+     * Читает палитру без блокировки, поэтому для живой секции вызывать только из основного потока.
+     *
+     * @param states    Индексы в {@code palette} для каждой позиции или {@code null}, если палитра из одного блока.
+     * @param outStates Массив для индексов оставшихся позиций; может быть {@code null}, если {@code states == null}.
+     * @param outFrom   Индекс, с которого заполняются выходные массивы.
+     * @return Количество оставшихся позиций.
+     */
+    public int filterUnchanged(@NonNull DataPaletteBlock<IBlockData> blocks, @NonNull short[] positions, short[] states,
+                               int from, int to, @NonNull IBlockData[] palette,
+                               @NonNull short[] outPositions, short[] outStates, int outFrom) {
+        return filterUnchanged(SectionBlocks.unlocked(blocks), positions, states, from, to, palette, outPositions, outStates, outFrom);
+    }
+
+    /**
+     * То же, что {@link #filterUnchanged(DataPaletteBlock, short[], short[], int, int, IBlockData[], short[], short[], int)},
+     * для любой секции. Блоки сравниваются по ссылке.
+     */
+    public <T> int filterUnchanged(@NonNull SectionBlocks<T> blocks, @NonNull short[] positions, short[] states,
+                                   int from, int to, @NonNull T[] palette,
+                                   @NonNull short[] outPositions, short[] outStates, int outFrom) {
+        int changed = outFrom;
+
+        for (int i = from; i < to; i++) {
+            short position = positions[i];
+            T target = states == null ? palette[0] : palette[states[i]];
+
+            if (blocks.get(PackedPositions.unpackX(position), PackedPositions.unpackY(position), PackedPositions.unpackZ(position)) == target) {
+                continue;
+            }
+
+            if (states != null)
+                outStates[changed] = states[i];
+
+            outPositions[changed++] = position;
+        }
+
+        return changed - outFrom;
+    }
+
+    public int filterUnchanged(@NonNull ChunkSection section, @NonNull short[] positions, short[] states,
+                               int from, int to, @NonNull IBlockData[] palette, @NonNull short[] outPositions, short[] outStates) {
+        return filterUnchanged(section.h(), positions, states, from, to, palette, outPositions, outStates, 0);
+    }
+
+    /**
+     * Подставляет в чанк новую секцию с готовой палитрой вместо {@code expected}. Биомы берутся из старой секции,
+     * а счётчики непустых блоков пересчитываются конструктором секции. Вызывать только из основного потока.
+     *
+     * @return {@code false}, если чанк выгружен или секция уже была заменена кем-то другим.
+     */
+    public boolean swapSection(@NonNull World world, int sectionX, int sectionY, int sectionZ,
+                               @NonNull ChunkSection expected, @NonNull DataPaletteBlock<IBlockData> states) {
+        if (!world.isChunkLoaded(sectionX, sectionZ)) {
+            return false;
+        }
+
+        ChunkSection[] sections = ((CraftWorld) world).getHandle().d(sectionX, sectionZ).d();
+        int index = sectionY - (world.getMinHeight() >> 4);
+
+        if (sections[index] != expected) {
+            return false;
+        }
+
+        sections[index] = new ChunkSection(states, expected.i());
+        return true;
+    }
+
+    /**
+     * Обновляет карты высот чанка и помечает его несохранённым. Для каждого столбца достаточно самого высокого
+     * записанного блока: записи ниже текущей поверхности карту высот не меняют, поэтому проход идёт сверху вниз
+     * только до поверхности, а не по каждому записанному блоку. Вызывать только из основного потока.
+     *
+     * @param columnTops Наибольшая записанная координата Y для каждого столбца {@code z << 4 | x}
+     *                   или {@link #NO_COLUMN}.
+     */
+    public void updateChunk(@NonNull World world, int chunkX, int chunkZ, @NonNull int[] columnTops) {
+        Chunk chunk = ((CraftWorld) world).getHandle().d(chunkX, chunkZ);
+        ChunkSection[] sections = chunk.d();
+        int minY = world.getMinHeight();
+        int minSectionY = minY >> 4;
+
+        for (HeightMap.Type type : HEIGHTMAPS) {
+            HeightMap heightMap = chunk.a(type);
+
+            for (int column = 0; column < columnTops.length; column++) {
+                int top = columnTops[column];
+
+                if (top == NO_COLUMN) {
+                    continue;
+                }
+
+                int x = column & 15, z = column >> 4;
+
+                // HeightMap#update сам опускается до нового верхнего блока, если прежний был заменён
+                for (int y = top; y >= minY && y >= heightMap.a(x, z) - 1; y--) {
+                    heightMap.a(x, y, z, sections[(y >> 4) - minSectionY].h().a(x, y & 15, z));
+                }
+            }
+        }
+
+        chunk.a(true); // ChunkAccess#setUnsaved
+    }
+
+    public void removeTileEntities(@NonNull World world, int sectionX, int sectionY, int sectionZ, @NonNull short[] positions, int from, int to) {
+        WorldServer worldServer = ((CraftWorld) world).getHandle();
+
+        if (!worldServer.capturedTileEntities.isEmpty()) {
+            removeTileEntities(worldServer, sectionX, sectionY, sectionZ, positions, from, to);
+        }
+    }
+
+    private void removeTileEntities(@NonNull WorldServer worldServer, int sectionX, int sectionY, int sectionZ,
+                                    short[] positions, int from, int to) {
+        for (int i = from; i < to; i++) {
+            short packed = positions[i];
+            BlockPosition position = new BlockPosition(
+                    sectionX << 4 | PackedPositions.unpackX(packed),
+                    sectionY << 4 | PackedPositions.unpackY(packed),
+                    sectionZ << 4 | PackedPositions.unpackZ(packed)
+            );
+
+            if (worldServer.capturedTileEntities.containsKey(position))
+                worldServer.o(position);
+        }
+    }
+}
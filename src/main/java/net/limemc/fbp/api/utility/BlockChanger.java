@@ -2,19 +2,18 @@ package net.limemc.fbp.api.utility;
 
 import lombok.NonNull;
 import lombok.experimental.UtilityClass;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.limemc.fbp.api.refresh.RefreshTargets;
 import net.minecraft.core.BlockPosition;
 import net.minecraft.network.protocol.game.PacketPlayOutBlockChange;
 import net.minecraft.server.level.WorldServer;
 import net.minecraft.world.level.block.state.IBlockData;
-import net.minecraft.world.level.chunk.Chunk;
 import net.minecraft.world.level.chunk.ChunkSection;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.craftbukkit.v1_20_R3.CraftWorld;
 import org.bukkit.craftbukkit.v1_20_R3.block.data.CraftBlockData;
-import org.bukkit.craftbukkit.v1_20_R3.entity.CraftPlayer;
 
 import java.util.Objects;
 
@@ -30,35 +29,44 @@ public class BlockChanger {
         World world = Objects.requireNonNull(location.getWorld());
 
         setBlock(world, location.getBlockX(), location.getBlockY(), location.getBlockZ(),
-                blockData, applyPhysics, removeTileEntity);
+                blockData, applyPhysics, removeTileEntity, null);
     }
 
-    private void setBlock(@NonNull World world, int x, int y, int z, BlockData blockData, boolean applyPhysics, boolean removeTileEntity) {
+    /**
+     * Устанавливает блок, не отправляя изменение сразу: позиция добавляется в {@link ChunkRefresher}
+     * и уйдёт игрокам вместе с остальными изменениями секции.
+     */
+    public void setBlock(@NonNull Location location, @NonNull BlockData blockData, boolean applyPhysics, boolean removeTileEntity,
+                         @NonNull ChunkRefresher refresher) {
+        World world = Objects.requireNonNull(location.getWorld());
+
+        setBlock(world, location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                blockData, applyPhysics, removeTileEntity, refresher);
+    }
+
+    private void setBlock(@NonNull World world, int x, int y, int z, BlockData blockData, boolean applyPhysics, boolean removeTileEntity,
+                          ChunkRefresher refresher) {
         WorldServer worldServer = ((CraftWorld) world).getHandle();
-        Chunk chunk = worldServer.d(x >> 4, z >> 4);
         BlockPosition position = new BlockPosition(x, y, z);
         IBlockData block = ((CraftBlockData) blockData).getState();
-        ChunkSection section = chunk.d()[y >> 4];
+        // Индекс секции отсчитывается от нижней границы мира, как и при пакетной записи
+        ChunkSection section = BatchBlockChanger.getSection(world, x >> 4, y >> 4, z >> 4);
 
         if (removeTileEntity)
             removeTileEntityIfExists(worldServer, position);
 
-        if (section == chunk.d()[chunk.a()]) {
-            chunk.d()[y >> 4] = section;
-        }
+        section.a(x & 15, y & 15, z & 15, block, applyPhysics); // ChunkSection#setBlockState обновляет счётчики блоков
 
-        if (applyPhysics)
-            section.h().a(x & 15, y & 15, z & 15, block);
+        if (refresher != null)
+            refresher.add(x, y, z);
         else
-            section.h().b(x & 15, y & 15, z & 15, block);
-
-        refreshChunk(position, block);
+            refreshChunk(world, x >> 4, z >> 4, position, block);
     }
 
-    private void refreshChunk(@NonNull BlockPosition blockPosition, @NonNull IBlockData blockData) {
-        Bukkit.getOnlinePlayers().forEach(p -> ((CraftPlayer) p).getHandle().c.a(
+    private void refreshChunk(@NonNull World world, int chunkX, int chunkZ, @NonNull BlockPosition blockPosition, @NonNull IBlockData blockData) {
+        RefreshTargets.collect(world).send(chunkX, chunkZ,
                 new PacketPlayOutBlockChange(blockPosition, blockData)
-        ));
+        );
     }
 
     private void removeTileEntityIfExists(@NonNull WorldServer worldServer, @NonNull BlockPosition position) {
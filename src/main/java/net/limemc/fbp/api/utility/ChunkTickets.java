@@ -0,0 +1,79 @@
+package net.limemc.fbp.api.utility;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.limemc.fbp.api.workload.WorkloadScheduler;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.server.level.WorldServer;
+import net.minecraft.world.level.ChunkCoordIntPair;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.v1_20_R3.CraftWorld;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Тикеты плагина, удерживающие чанки загруженными на время изменений.
+ * <p>
+ * В отличие от {@link World#addPluginChunkTicket(int, int, org.bukkit.plugin.Plugin)}, тикет ставится напрямую
+ * в систему чанков сервера без синхронной загрузки: чанк загружается или генерируется в её потоках, а основной
+ * поток только проверяет готовность через {@link World#isChunkLoaded(int, int)}.
+ * Тикеты считаются по ссылкам, поэтому сессии, задевающие один чанк, не снимают тикеты друг друга.
+ * Методы вызываются только из основного потока.
+ */
+@UtilityClass
+public class ChunkTickets {
+    /**
+     * Расстояние тикета 0 даёт уровень полностью загруженного чанка без тиков блоков и сущностей.
+     */
+    private final int TICKET_DISTANCE = 0;
+
+    private final Map<UUID, Long2IntMap> holders = new HashMap<>();
+
+    /**
+     * Ставит тикет на чанк, если его ещё не держит другая сессия.
+     */
+    public void acquire(@NonNull World world, int chunkX, int chunkZ) {
+        Long2IntMap counts = holders.computeIfAbsent(world.getUID(), uid -> new Long2IntOpenHashMap());
+
+        if (counts.mergeInt(PackedPositions.chunkKey(chunkX, chunkZ), 1, Integer::sum) == 1) {
+            getHandle(world).l().a(TicketType.PLUGIN_TICKET, new ChunkCoordIntPair(chunkX, chunkZ), TICKET_DISTANCE,
+                    WorkloadScheduler.getInstance().getPlugin());
+        }
+    }
+
+    /**
+     * Снимает тикет, поставленный {@link #acquire(World, int, int)}, когда его больше не держит ни одна сессия.
+     */
+    public void release(@NonNull World world, int chunkX, int chunkZ) {
+        Long2IntMap counts = holders.get(world.getUID());
+        long key = PackedPositions.chunkKey(chunkX, chunkZ);
+
+        int count = counts != null ? counts.get(key) : 0;
+
+        if (count == 0) {
+            return;
+        }
+
+        if (count > 1) {
+            counts.put(key, count - 1);
+            return;
+        }
+
+        counts.remove(key);
+
+        if (counts.isEmpty()) {
+            holders.remove(world.getUID());
+        }
+
+        getHandle(world).l().b(TicketType.PLUGIN_TICKET, new ChunkCoordIntPair(chunkX, chunkZ), TICKET_DISTANCE,
+                WorkloadScheduler.getInstance().getPlugin());
+    }
+
+    private WorldServer getHandle(World world) {
+        return ((CraftWorld) world).getHandle();
+    }
+}
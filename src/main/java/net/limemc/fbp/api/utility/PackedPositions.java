@@ -0,0 +1,51 @@
+package net.limemc.fbp.api.utility;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Упаковка координат в примитивы.
+ * <ul>
+ *     <li>Позиция внутри секции (16x16x16) - в short так же, как это делает ванильный {@code SectionPosition}:
+ *     {@code (x << 8) | (z << 4) | y}, где x, y, z - локальные координаты в секции.</li>
+ *     <li>Координаты секции - в long так же, как {@code SectionPosition#asLong}.</li>
+ *     <li>Координаты чанка - в long так же, как {@code ChunkCoordIntPair#pair}.</li>
+ * </ul>
+ */
+@UtilityClass
+public class PackedPositions {
+    public short pack(int x, int y, int z) {
+        return (short) ((x & 15) << 8 | (z & 15) << 4 | (y & 15));
+    }
+
+    public int unpackX(short position) {
+        return position >>> 8 & 15;
+    }
+
+    public int unpackY(short position) {
+        return position & 15;
+    }
+
+    public int unpackZ(short position) {
+        return position >>> 4 & 15;
+    }
+
+    public long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) sectionX & 0x3FFFFFL) << 42 | (long) sectionY & 0xFFFFFL | ((long) sectionZ & 0x3FFFFFL) << 20;
+    }
+
+    public int sectionX(long key) {
+        return (int) (key >> 42);
+    }
+
+    public int sectionY(long key) {
+        return (int) (key << 44 >> 44);
+    }
+
+    public int sectionZ(long key) {
+        return (int) (key << 22 >> 42);
+    }
+
+    public long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+    }
+}
@@ -0,0 +1,33 @@
+package net.limemc.fbp.api.utility;
+
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+
+/**
+ * Блоки одной секции по локальным координатам. Через него циклы записи и сравнения
+ * {@link BatchBlockChanger} работают и с палитрой секции сервера, и с секцией в памяти, например в бенчмарках.
+ *
+ * @param <T> Тип блока.
+ */
+public interface SectionBlocks<T> {
+    T get(int x, int y, int z);
+
+    void set(int x, int y, int z, T block);
+
+    /**
+     * Палитра секции без блокировок: и чтение, и запись не захватывают её блокировку.
+     */
+    static SectionBlocks<IBlockData> unlocked(DataPaletteBlock<IBlockData> blocks) {
+        return new SectionBlocks<IBlockData>() {
+            @Override
+            public IBlockData get(int x, int y, int z) {
+                return blocks.a(x, y, z);
+            }
+
+            @Override
+            public void set(int x, int y, int z, IBlockData block) {
+                blocks.b(x, y, z, block);
+            }
+        };
+    }
+}
@@ -5,4 +5,17 @@ package net.limemc.fbp.api.workload;
  */
 public interface Workload {
     void compute();
+
+    /**
+     * Выполняет часть нагрузки, пока не наступит {@code stopTime}.
+     * Обычные нагрузки выполняются целиком, пакетные - продолжают с места остановки при следующем вызове.
+     * Нагрузка может вернуть {@code false} и раньше {@code stopTime}, если ей нужно дождаться следующего тика.
+     *
+     * @param stopTime Момент {@link System#nanoTime()}, после которого нужно остановиться.
+     * @return {@code true}, если нагрузка выполнена полностью.
+     */
+    default boolean compute(long stopTime) {
+        compute();
+        return true;
+    }
 }
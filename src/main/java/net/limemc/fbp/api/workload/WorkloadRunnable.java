@@ -3,14 +3,15 @@ package net.limemc.fbp.api.workload;
 import net.limemc.fbp.api.workload.impl.WhenCompleteWorkload;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
 
 public class WorkloadRunnable implements Runnable {
 
-    private static final double MAX_MILLIS_PER_TICK = 2.5;
-    private static final int MAX_NANOS_PER_TICK = (int) (MAX_MILLIS_PER_TICK * 1E6);
-
     private final Deque<Workload> workloadDeque = new ArrayDeque<>();
+    private final List<Runnable> tickEndListeners = new ArrayList<>();
 
     public void addWorkload(Workload workload) {
         this.workloadDeque.add(workload);
@@ -21,14 +22,63 @@ public class WorkloadRunnable implements Runnable {
         this.workloadDeque.add(workload);
     }
 
-    @Override
-    public void run() {
-        long stopTime = System.nanoTime() + MAX_NANOS_PER_TICK;
+    /**
+     * Добавляет действие, которое выполняется в конце каждого запуска, после обработки нагрузок.
+     */
+    public void onTickEnd(Runnable runnable) {
+        this.tickEndListeners.add(runnable);
+    }
+
+    public boolean isDone() {
+        return this.workloadDeque.isEmpty();
+    }
+
+    /**
+     * Ставит нагрузки в общий {@link WorkloadScheduler}.
+     */
+    public void schedule() {
+        WorkloadScheduler.getInstance().submit(this);
+    }
 
+    /**
+     * Обрабатывает нагрузки, пока не наступит {@code stopTime}.
+     * Нагрузка, бросившая исключение, записывается в лог и снимается, а следующие за ней, в том числе
+     * действия {@link #whenComplete(Runnable)}, выполняются как обычно.
+     *
+     * @param stopTime Момент {@link System#nanoTime()}, после которого обработка прекращается.
+     * @return {@code true}, если все нагрузки выполнены.
+     */
+    public boolean drain(long stopTime) {
         Workload nextLoad;
 
-        while (System.nanoTime() <= stopTime && (nextLoad = this.workloadDeque.poll()) != null) {
-            nextLoad.compute();
+        while (System.nanoTime() <= stopTime && (nextLoad = this.workloadDeque.peek()) != null) {
+            boolean done;
+
+            try {
+                done = nextLoad.compute(stopTime);
+            } catch (RuntimeException e) {
+                // Упавшая нагрузка упала бы и при следующем вызове, поэтому снимается только она
+                WorkloadScheduler.getInstance().getPlugin().getLogger().log(Level.SEVERE, "Workload failed and was skipped", e);
+                done = true;
+            }
+
+            // Незавершённая нагрузка либо исчерпала время, либо ждёт чего-то до следующего тика
+            if (!done) {
+                break;
+            }
+
+            this.workloadDeque.poll();
         }
+
+        this.tickEndListeners.forEach(Runnable::run);
+        return this.workloadDeque.isEmpty();
+    }
+
+    /**
+     * Обрабатывает нагрузки в пределах текущего бюджета {@link WorkloadScheduler}.
+     */
+    @Override
+    public void run() {
+        this.drain(System.nanoTime() + WorkloadScheduler.getInstance().getNanosPerTick());
     }
 }
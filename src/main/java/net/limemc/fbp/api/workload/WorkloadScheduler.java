@@ -0,0 +1,196 @@
+package net.limemc.fbp.api.workload;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+/**
+ * Общий для всех сессий планировщик нагрузок. Одна повторяющаяся задача каждый тик обрабатывает
+ * все активные {@link WorkloadRunnable}, деля между ними бюджет времени на тик.
+ * <p>
+ * Бюджет подстраивается под длительность тика: пока сервер укладывается в 50 мс, бюджет растёт
+ * на {@link #INCREASE_MILLIS} за тик, а как только средний тик становится длиннее - сокращается вдвое.
+ * Так большие изменения быстро завершаются на свободном сервере и сами уступают время под нагрузкой.
+ * <p>
+ * Упавшую нагрузку снимает сам {@link WorkloadRunnable}, продолжая обработку следующих за ней. Если исключение
+ * всё же вышло из {@link WorkloadRunnable}, например из действия конца тика, оно записывается в лог плагина,
+ * а {@link WorkloadRunnable} снимается с обработки. Остальные в этом тике получают своё время как обычно.
+ */
+public class WorkloadScheduler implements Runnable {
+    private static final double TICK_MILLIS = 50.0;
+    private static final double OVERLOAD_TICK_MILLIS = TICK_MILLIS * 1.04;
+    private static final double INCREASE_MILLIS = 0.5;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    @Getter
+    private static final WorkloadScheduler instance = new WorkloadScheduler();
+
+    private final Queue<WorkloadRunnable> pending = new ConcurrentLinkedQueue<>();
+    private final List<WorkloadRunnable> active = new ArrayList<>();
+
+    @Getter
+    @Setter
+    private double minMillisPerTick = 1.0;
+
+    @Getter
+    @Setter
+    private double maxMillisPerTick = 25.0;
+
+    @Getter
+    private volatile double millisPerTick = 2.5;
+
+    @Getter
+    private volatile double averageTickMillis = TICK_MILLIS;
+
+    /**
+     * Время, потраченное на нагрузки в последнем тике, в наносекундах.
+     */
+    @Getter
+    private volatile long lastTickBusyNanos;
+
+    /**
+     * Количество нагрузок в обработке после последнего тика. Хранится отдельно от списка,
+     * чтобы размер очереди можно было читать из других потоков, например через JMX.
+     */
+    private volatile int activeSize;
+
+    private Plugin plugin;
+    private BukkitTask task;
+    private long lastTickNanos;
+
+    private WorkloadScheduler() {
+    }
+
+    /**
+     * Задаёт плагин, от имени которого запускается задача планировщика.
+     * Если не вызван, используется плагин, загрузивший эту библиотеку.
+     */
+    public synchronized void init(@NonNull Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Ставит нагрузку в очередь. Обработка начнётся со следующего тика.
+     * Метод можно вызывать из любого потока.
+     */
+    public void submit(@NonNull WorkloadRunnable runnable) {
+        this.pending.add(runnable);
+        this.ensureStarted();
+    }
+
+    /**
+     * @return Количество нагрузок, ожидающих обработки или обрабатываемых сейчас.
+     */
+    public int getQueueSize() {
+        return this.activeSize + this.pending.size();
+    }
+
+    public long getNanosPerTick() {
+        return (long) (this.millisPerTick * 1E6);
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+
+        if (this.lastTickNanos != 0) {
+            this.adjustBudget((now - this.lastTickNanos) / 1E6);
+        }
+
+        this.lastTickNanos = now;
+
+        WorkloadRunnable next;
+        while ((next = this.pending.poll()) != null) {
+            this.active.add(next);
+        }
+
+        this.activeSize = this.active.size();
+
+        if (this.active.isEmpty()) {
+            this.lastTickBusyNanos = 0;
+            this.stop();
+            return;
+        }
+
+        long stopTime = now + this.getNanosPerTick();
+        int remaining = this.active.size();
+
+        for (Iterator<WorkloadRunnable> iterator = this.active.iterator(); iterator.hasNext(); remaining--) {
+            WorkloadRunnable runnable = iterator.next();
+            long sliceStart = System.nanoTime();
+            long sliceEnd = sliceStart + Math.max(0L, (stopTime - sliceStart) / remaining);
+
+            try {
+                if (runnable.drain(sliceEnd)) {
+                    iterator.remove();
+                }
+            } catch (RuntimeException e) {
+                // Упавшая нагрузка упала бы и в следующем тике, поэтому снимается, чтобы не отнимать время у остальных
+                this.getPlugin().getLogger().log(Level.SEVERE, "Workload runnable failed and was removed from the scheduler", e);
+                iterator.remove();
+            }
+        }
+
+        this.activeSize = this.active.size();
+        this.lastTickBusyNanos = System.nanoTime() - now;
+    }
+
+    private void adjustBudget(double tickMillis) {
+        double average = this.averageTickMillis * (1 - AVERAGE_WEIGHT) + tickMillis * AVERAGE_WEIGHT;
+        this.averageTickMillis = average;
+
+        if (average > OVERLOAD_TICK_MILLIS) {
+            this.millisPerTick = Math.max(this.minMillisPerTick, this.millisPerTick * DECREASE_FACTOR);
+        } else if (tickMillis <= OVERLOAD_TICK_MILLIS) {
+            this.millisPerTick = Math.min(this.maxMillisPerTick, this.millisPerTick + INCREASE_MILLIS);
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (this.task != null && !this.task.isCancelled()) {
+            return;
+        }
+
+        this.lastTickNanos = 0;
+        this.task = Bukkit.getScheduler().runTaskTimer(this.getPlugin(), this, 1L, 1L);
+    }
+
+    /**
+     * @return Плагин, от имени которого работает планировщик: заданный через {@link #init(Plugin)}
+     * или загрузивший эту библиотеку.
+     */
+    public synchronized Plugin getPlugin() {
+        if (this.plugin == null) {
+            try {
+                this.plugin = JavaPlugin.getProvidingPlugin(WorkloadScheduler.class);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IllegalStateException("WorkloadScheduler is not initialized, call init(plugin) first", e);
+            }
+        }
+
+        return this.plugin;
+    }
+
+    private synchronized void stop() {
+        if (!this.pending.isEmpty()) {
+            return;
+        }
+
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+}
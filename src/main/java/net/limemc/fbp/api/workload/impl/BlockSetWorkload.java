@@ -1,6 +1,7 @@
 package net.limemc.fbp.api.workload.impl;
 
 import lombok.RequiredArgsConstructor;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
 import net.limemc.fbp.api.utility.BlockChanger;
 import net.limemc.fbp.api.workload.Workload;
 import org.bukkit.Location;
@@ -13,9 +14,10 @@ public class BlockSetWorkload implements Workload {
     private final BlockData blockData;
     private final boolean applyPhysics;
     private final boolean removeTileEntity;
+    private final ChunkRefresher refresher;
 
     @Override
     public void compute() {
-        BlockChanger.setBlock(location, blockData, applyPhysics, removeTileEntity);
+        BlockChanger.setBlock(location, blockData, applyPhysics, removeTileEntity, refresher);
     }
 }
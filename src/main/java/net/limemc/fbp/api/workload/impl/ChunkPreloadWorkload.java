@@ -0,0 +1,94 @@
+package net.limemc.fbp.api.workload.impl;
+
+import lombok.NonNull;
+import net.limemc.fbp.api.utility.ChunkTickets;
+import net.limemc.fbp.api.workload.Workload;
+import org.bukkit.World;
+
+import java.util.List;
+
+/**
+ * Загружает чанки изменения до начала записи. На каждый чанк ставится тикет {@link ChunkTickets}, после чего
+ * нагрузка каждый тик только проверяет, загружены ли чанки, и завершается, когда загружены все.
+ * Так запись идёт по уже загруженным чанкам и не загружает и не генерирует их посреди тика.
+ * <p>
+ * Тикеты держатся до {@link #release()}, который нужно вызвать после записи и отправки изменений.
+ */
+public class ChunkPreloadWorkload implements Workload {
+    private final World world;
+    private final int[] chunks;
+
+    private int requested;
+    private int loaded;
+
+    /**
+     * @param world  Мир чанков.
+     * @param chunks Координаты чанков {@code {x, z}}, например из {@link net.limemc.fbp.api.region.Territory#getTerritoryChunkCoordinates()}.
+     */
+    public ChunkPreloadWorkload(@NonNull World world, @NonNull List<int[]> chunks) {
+        this.world = world;
+        this.chunks = new int[chunks.size() * 2];
+
+        for (int i = 0; i < chunks.size(); i++) {
+            int[] chunk = chunks.get(i);
+
+            this.chunks[i << 1] = chunk[0];
+            this.chunks[i << 1 | 1] = chunk[1];
+        }
+    }
+
+    /**
+     * Ставит все тикеты и дожидается чанков синхронно.
+     */
+    @Override
+    public void compute() {
+        this.request(Long.MAX_VALUE);
+
+        for (int i = this.loaded; i < this.requested; i++) {
+            this.world.getChunkAt(this.chunks[i << 1], this.chunks[i << 1 | 1]);
+        }
+
+        this.loaded = this.requested;
+    }
+
+    /**
+     * Ставит тикеты в пределах бюджета и возвращает {@code false}, пока хотя бы один чанк не загружен:
+     * загрузка идёт в системе чанков сервера, поэтому ждать её в этом тике бесполезно.
+     */
+    @Override
+    public boolean compute(long stopTime) {
+        this.request(stopTime);
+
+        while (this.loaded < this.requested
+                && this.world.isChunkLoaded(this.chunks[this.loaded << 1], this.chunks[this.loaded << 1 | 1])) {
+            this.loaded++;
+        }
+
+        return this.loaded == this.getChunksCount();
+    }
+
+    private void request(long stopTime) {
+        int count = this.getChunksCount();
+
+        while (this.requested < count && System.nanoTime() <= stopTime) {
+            ChunkTickets.acquire(this.world, this.chunks[this.requested << 1], this.chunks[this.requested << 1 | 1]);
+            this.requested++;
+        }
+    }
+
+    /**
+     * Снимает поставленные тикеты. Повторный вызов ничего не делает.
+     */
+    public void release() {
+        for (int i = 0; i < this.requested; i++) {
+            ChunkTickets.release(this.world, this.chunks[i << 1], this.chunks[i << 1 | 1]);
+        }
+
+        this.requested = 0;
+        this.loaded = 0;
+    }
+
+    public int getChunksCount() {
+        return this.chunks.length >> 1;
+    }
+}
@@ -0,0 +1,242 @@
+package net.limemc.fbp.api.workload.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.limemc.fbp.api.snapshot.SessionSnapshot;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.limemc.fbp.api.workload.Workload;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.ChunkSection;
+import org.bukkit.World;
+
+import java.util.Arrays;
+
+/**
+ * Очередь блоков в упакованном виде вместо объекта {@link BlockSetWorkload} на каждый блок.
+ * Подряд идущие позиции одной секции образуют отрезок: для него хранится ключ секции ({@code long})
+ * и индекс начала ({@code int}), а сами позиции - по {@code short} на блок. Блок задаётся индексом
+ * в небольшой палитре; при палитре из одного блока индексы не хранятся вовсе.
+ * <p>
+ * При обработке каждый отрезок записывается целиком через {@link BatchBlockChanger}.
+ */
+public class PackedBlockWorkload implements Workload {
+    private static final int INITIAL_RUNS = 16;
+    /**
+     * Наибольший размер массивов, выделяемых заранее по {@code expectedSize}; дальше они растут по мере заполнения.
+     */
+    private static final int MAX_EXPECTED_SIZE = 1 << 24;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    @Getter
+    private final World world;
+    @Getter
+    private final IBlockData[] palette;
+    @Getter
+    private final boolean applyPhysics;
+    @Getter
+    private final boolean removeTileEntity;
+    @Getter
+    private final ChunkRefresher refresher;
+    private final int minY, maxY;
+
+    private long[] runKeys = new long[INITIAL_RUNS];
+    private int[] runStarts = new int[INITIAL_RUNS + 1];
+    /**
+     * Если задан, перед записью каждого отрезка в него сохраняются прежние блоки.
+     */
+    @Getter
+    @Setter
+    private SessionSnapshot snapshot;
+
+    /**
+     * Пропускать позиции, в которых уже стоит целевой блок: они не записываются и не отправляются игрокам.
+     */
+    @Getter
+    @Setter
+    private boolean skipUnchanged;
+
+    /**
+     * Количество блоков, пропущенных из-за {@link #isSkipUnchanged()}.
+     */
+    @Getter
+    private long skipped;
+
+    private short[] scratchPositions;
+    private short[] scratchStates;
+
+    @Getter
+    private int runs;
+
+    @Getter
+    private short[] positions;
+    @Getter
+    private short[] states;
+
+    @Getter
+    private int size;
+
+    private int nextRun;
+
+    /**
+     * @param palette      Блоки, на которые ссылаются индексы при {@link #add(int, int, int, int)}.
+     * @param expectedSize Ожидаемое количество блоков, чтобы не расширять массивы по ходу заполнения.
+     *                     Заранее выделяется не больше {@value #MAX_EXPECTED_SIZE} позиций.
+     */
+    public PackedBlockWorkload(@NonNull World world, @NonNull IBlockData[] palette, boolean applyPhysics, boolean removeTileEntity,
+                               @NonNull ChunkRefresher refresher, int expectedSize) {
+        if (palette.length == 0 || palette.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Palette size must be between 1 and " + Short.MAX_VALUE);
+        }
+
+        this.world = world;
+        this.palette = palette;
+        this.applyPhysics = applyPhysics;
+        this.removeTileEntity = removeTileEntity;
+        this.refresher = refresher;
+        this.minY = world.getMinHeight();
+        this.maxY = world.getMaxHeight();
+        this.positions = new short[Math.max(16, Math.min(MAX_EXPECTED_SIZE, expectedSize))];
+        this.states = palette.length > 1 ? new short[this.positions.length] : null;
+    }
+
+    public void add(int x, int y, int z) {
+        this.add(x, y, z, 0);
+    }
+
+    /**
+     * Позиции вне высоты мира пропускаются: в них нет секций, и запись оборвалась бы на полпути.
+     *
+     * @param state Индекс блока в палитре.
+     * @throws IllegalArgumentException если индекс вне палитры. Проверка идёт при раскладке, поэтому
+     *                                  неверный индекс не прерывает запись на полпути.
+     */
+    public void add(int x, int y, int z, int state) {
+        if (state < 0 || state >= this.palette.length) {
+            throw new IllegalArgumentException("Block index " + state + " at " + x + ", " + y + ", " + z
+                    + " is out of palette bounds [0, " + this.palette.length + ")");
+        }
+
+        if (y < this.minY || y >= this.maxY) {
+            return;
+        }
+
+        long key = PackedPositions.sectionKey(x >> 4, y >> 4, z >> 4);
+
+        if (this.runs == 0 || this.runKeys[this.runs - 1] != key) {
+            if (this.runs == this.runKeys.length) {
+                this.runKeys = Arrays.copyOf(this.runKeys, this.runs << 1);
+                this.runStarts = Arrays.copyOf(this.runStarts, (this.runs << 1) + 1);
+            }
+
+            this.runKeys[this.runs] = key;
+            this.runStarts[this.runs++] = this.size;
+        }
+
+        if (this.size == this.positions.length) {
+            if (this.size == MAX_ARRAY_SIZE) {
+                throw new IllegalStateException("Workload cannot hold more than " + MAX_ARRAY_SIZE + " blocks");
+            }
+
+            this.positions = Arrays.copyOf(this.positions, (int) Math.min(MAX_ARRAY_SIZE, this.size + (this.size >> 1) + 1L));
+
+            if (this.states != null)
+                this.states = Arrays.copyOf(this.states, this.positions.length);
+        }
+
+        if (this.states != null)
+            this.states[this.size] = (short) state;
+
+        this.positions[this.size++] = PackedPositions.pack(x, y, z);
+        this.runStarts[this.runs] = this.size;
+    }
+
+    /**
+     * Учитывает блоки, пропущенные при обработке очереди другим способом, например в {@link ParallelSectionWorkload}.
+     */
+    public void addSkipped(long skipped) {
+        this.skipped += skipped;
+    }
+
+    public long getRunKey(int run) {
+        return this.runKeys[run];
+    }
+
+    public int getRunStart(int run) {
+        return this.runStarts[run];
+    }
+
+    public int getRunEnd(int run) {
+        return this.runStarts[run + 1];
+    }
+
+    /**
+     * @return Примерный объём памяти, занятый очередью, в байтах.
+     */
+    public long getMemoryUsage() {
+        return (long) this.runKeys.length * Long.BYTES
+                + (long) this.runStarts.length * Integer.BYTES
+                + (long) this.positions.length * Short.BYTES
+                + (this.states != null ? (long) this.states.length * Short.BYTES : 0L);
+    }
+
+    private void ensureScratch(int length) {
+        if (this.scratchPositions == null || this.scratchPositions.length < length) {
+            this.scratchPositions = new short[Math.max(length, 4096)];
+            this.scratchStates = this.states != null ? new short[this.scratchPositions.length] : null;
+        }
+    }
+
+    @Override
+    public void compute() {
+        this.compute(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        while (this.nextRun < this.runs) {
+            long key = this.runKeys[this.nextRun];
+            int sectionX = PackedPositions.sectionX(key);
+            int sectionY = PackedPositions.sectionY(key);
+            int sectionZ = PackedPositions.sectionZ(key);
+            int from = this.runStarts[this.nextRun];
+            int to = this.runStarts[this.nextRun + 1];
+
+            ChunkSection section = BatchBlockChanger.getSection(this.world, sectionX, sectionY, sectionZ);
+            short[] positions = this.positions;
+            short[] states = this.states;
+
+            this.nextRun++;
+
+            if (this.skipUnchanged) {
+                this.ensureScratch(to - from);
+
+                int changed = BatchBlockChanger.filterUnchanged(section, positions, states, from, to, this.palette,
+                        this.scratchPositions, this.scratchStates);
+
+                this.skipped += (to - from) - changed;
+                positions = this.scratchPositions;
+                states = states != null ? this.scratchStates : null;
+                from = 0;
+                to = changed;
+            }
+
+            if (from < to) {
+                if (this.snapshot != null)
+                    this.snapshot.capture(sectionX, sectionY, sectionZ, section, positions, from, to);
+
+                BatchBlockChanger.setBlocks(this.world, section, sectionX, sectionY, sectionZ,
+                        positions, states, from, to, this.palette,
+                        this.applyPhysics, this.removeTileEntity, this.refresher);
+            }
+
+            if (System.nanoTime() > stopTime) {
+                break;
+            }
+        }
+
+        return this.nextRun >= this.runs;
+    }
+}
@@ -0,0 +1,241 @@
+package net.limemc.fbp.api.workload.impl;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import lombok.NonNull;
+import net.limemc.fbp.api.snapshot.SessionSnapshot;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.limemc.fbp.api.workload.Workload;
+import net.limemc.fbp.api.workload.WorkloadScheduler;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.ChunkSection;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+
+/**
+ * Строит новые палитры секций в пуле потоков и подставляет готовые секции в основном потоке.
+ * <ol>
+ *     <li>Основной поток копирует палитру каждой затронутой секции и отдаёт копию в пул.</li>
+ *     <li>Потоки пула записывают в копии все блоки из {@link PackedBlockWorkload}.</li>
+ *     <li>Основной поток заменяет секции готовыми и отмечает их для отправки игрокам.</li>
+ * </ol>
+ * Изменения, сделанные в секции между копированием и подстановкой, будут перезаписаны,
+ * поэтому территория не должна изменяться другими способами, пока сессия выполняется.
+ * Если секцию за это время заменил кто-то другой или её построение в пуле завершилось ошибкой, её блоки
+ * записываются обычным способом. Так ведут себя и {@link #compute()}, и {@link #compute(long)}.
+ */
+public class ParallelSectionWorkload implements Workload {
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final PackedBlockWorkload source;
+    private final List<SectionJob> jobs;
+    private final Queue<SectionJob> built = new ConcurrentLinkedQueue<>();
+
+    private int submitted;
+    private int swapped;
+
+    public ParallelSectionWorkload(@NonNull PackedBlockWorkload source) {
+        this.source = source;
+        this.jobs = groupRuns(source);
+    }
+
+    private static List<SectionJob> groupRuns(PackedBlockWorkload source) {
+        Long2ObjectLinkedOpenHashMap<SectionJob> jobs = new Long2ObjectLinkedOpenHashMap<>();
+
+        for (int run = 0; run < source.getRuns(); run++) {
+            long key = source.getRunKey(run);
+            SectionJob job = jobs.get(key);
+
+            if (job == null) {
+                job = new SectionJob(key);
+                jobs.put(key, job);
+            }
+
+            job.runs.add(run);
+        }
+
+        return new ArrayList<>(jobs.values());
+    }
+
+    @Override
+    public void compute() {
+        this.submit(Long.MAX_VALUE);
+
+        // Ошибка построения не выбрасывается: секция будет записана обычным способом, как и в compute(long)
+        for (SectionJob job : this.jobs) {
+            job.future.handle((result, throwable) -> null).join();
+        }
+
+        this.swap(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        this.submit(stopTime);
+        this.swap(stopTime);
+
+        return this.swapped == this.jobs.size();
+    }
+
+    private void submit(long stopTime) {
+        World world = this.source.getWorld();
+
+        while (this.submitted < this.jobs.size() && System.nanoTime() <= stopTime) {
+            SectionJob job = this.jobs.get(this.submitted++);
+
+            job.section = BatchBlockChanger.getSection(world, PackedPositions.sectionX(job.key), PackedPositions.sectionY(job.key), PackedPositions.sectionZ(job.key));
+            job.states = BatchBlockChanger.copyStates(job.section);
+            job.future = CompletableFuture.runAsync(() -> this.build(job), POOL)
+                    .whenComplete((result, throwable) -> {
+                        job.failure = throwable;
+                        this.built.add(job);
+                    });
+        }
+    }
+
+    private void build(SectionJob job) {
+        IBlockData[] palette = this.source.getPalette();
+        SessionSnapshot snapshot = this.source.getSnapshot();
+
+        if (this.source.isSkipUnchanged()) {
+            this.filterUnchanged(job);
+        }
+
+        int sectionX = PackedPositions.sectionX(job.key);
+        int sectionY = PackedPositions.sectionY(job.key);
+        int sectionZ = PackedPositions.sectionZ(job.key);
+
+        // Прежние блоки читаются из копии до записи, прямо в потоке пула
+        if (snapshot != null) {
+            this.forEachRange(job, (positions, states, from, to) ->
+                    snapshot.capture(sectionX, sectionY, sectionZ, job.states, positions, from, to));
+        }
+
+        this.forEachRange(job, (positions, states, from, to) ->
+                BatchBlockChanger.writeStates(job.states, positions, states, from, to, palette));
+    }
+
+    /**
+     * Собирает в массивы задачи только позиции, где блок действительно изменится.
+     */
+    private void filterUnchanged(SectionJob job) {
+        int total = 0;
+        for (int i = 0; i < job.runs.size(); i++) {
+            int run = job.runs.getInt(i);
+            total += this.source.getRunEnd(run) - this.source.getRunStart(run);
+        }
+
+        short[] states = this.source.getStates();
+        job.changedPositions = new short[total];
+        job.changedStates = states != null ? new short[total] : null;
+
+        for (int i = 0; i < job.runs.size(); i++) {
+            int run = job.runs.getInt(i);
+            int from = this.source.getRunStart(run);
+            int to = this.source.getRunEnd(run);
+
+            job.changed += BatchBlockChanger.filterUnchanged(job.states, this.source.getPositions(), states, from, to,
+                    this.source.getPalette(), job.changedPositions, job.changedStates, job.changed);
+        }
+
+        job.skipped = total - job.changed;
+    }
+
+    private void forEachRange(SectionJob job, RangeAction action) {
+        if (job.changedPositions != null) {
+            if (job.changed > 0)
+                action.accept(job.changedPositions, job.changedStates, 0, job.changed);
+
+            return;
+        }
+
+        for (int i = 0; i < job.runs.size(); i++) {
+            int run = job.runs.getInt(i);
+            action.accept(this.source.getPositions(), this.source.getStates(), this.source.getRunStart(run), this.source.getRunEnd(run));
+        }
+    }
+
+    private void swap(long stopTime) {
+        World world = this.source.getWorld();
+        SectionJob job;
+
+        while (System.nanoTime() <= stopTime && (job = this.built.poll()) != null) {
+            int sectionX = PackedPositions.sectionX(job.key);
+            int sectionY = PackedPositions.sectionY(job.key);
+            int sectionZ = PackedPositions.sectionZ(job.key);
+
+            if (job.failure != null) {
+                WorkloadScheduler.getInstance().getPlugin().getLogger().log(Level.WARNING, "Parallel build of section "
+                        + sectionX + ", " + sectionY + ", " + sectionZ + " failed, writing it on the main thread", job.failure);
+
+                // Отбор мог оборваться на полпути, поэтому записываются все позиции задачи
+                job.changedPositions = null;
+                job.changedStates = null;
+                job.skipped = 0;
+            }
+
+            this.source.addSkipped(job.skipped);
+
+            // Если ни один блок не изменился, секцию незачем подменять
+            if (job.changedPositions != null && job.changed == 0) {
+                job.states = null;
+                this.swapped++;
+                continue;
+            }
+
+            boolean replaced = job.failure == null
+                    && BatchBlockChanger.swapSection(world, sectionX, sectionY, sectionZ, job.section, job.states);
+
+            this.forEachRange(job, (positions, states, from, to) -> {
+                if (replaced) {
+                    if (this.source.isRemoveTileEntity())
+                        BatchBlockChanger.removeTileEntities(world, sectionX, sectionY, sectionZ, positions, from, to);
+
+                    this.source.getRefresher().add(sectionX, sectionY, sectionZ, positions, from, to);
+                } else {
+                    BatchBlockChanger.setBlocks(world, sectionX, sectionY, sectionZ, positions, states,
+                            from, to, this.source.getPalette(), this.source.isApplyPhysics(), this.source.isRemoveTileEntity(),
+                            this.source.getRefresher());
+                }
+            });
+
+            job.states = null;
+            job.changedPositions = null;
+            job.changedStates = null;
+            this.swapped++;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeAction {
+        void accept(short[] positions, short[] states, int from, int to);
+    }
+
+    private static class SectionJob {
+        private final long key;
+        private final IntArrayList runs = new IntArrayList(1);
+
+        private ChunkSection section;
+        private DataPaletteBlock<IBlockData> states;
+        private CompletableFuture<Void> future;
+        private Throwable failure;
+
+        private short[] changedPositions;
+        private short[] changedStates;
+        private int changed;
+        private long skipped;
+
+        private SectionJob(long key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package net.limemc.fbp.api.workload.impl;
+
+import lombok.RequiredArgsConstructor;
+import net.limemc.fbp.api.refresh.ChunkRelighter;
+import net.limemc.fbp.api.workload.Workload;
+
+/**
+ * Отдаёт изменённые секции движку освещения после записи, по несколько секций за тик.
+ */
+@RequiredArgsConstructor
+public class RelightWorkload implements Workload {
+
+    private final ChunkRelighter relighter;
+
+    @Override
+    public void compute() {
+        relighter.relight(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        return relighter.relight(stopTime);
+    }
+}
@@ -0,0 +1,65 @@
+package net.limemc.fbp.api.workload.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.limemc.fbp.api.snapshot.SectionSnapshot;
+import net.limemc.fbp.api.snapshot.SessionSnapshot;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.workload.Workload;
+
+import java.util.List;
+
+/**
+ * Возвращает блоки из {@link SessionSnapshot} тем же пакетным путём, что и обычная запись:
+ * каждая секция распаковывается во временные массивы и записывается одним циклом.
+ */
+public class SnapshotRestoreWorkload implements Workload {
+    private final SessionSnapshot snapshot;
+    private final List<SectionSnapshot> sections;
+    private final boolean removeTileEntity;
+    private final ChunkRefresher refresher;
+
+    private final short[] positions = new short[4096];
+    private final short[] states = new short[4096];
+
+    private int next;
+
+    /**
+     * Количество возвращённых позиций.
+     */
+    @Getter
+    private long blocks;
+
+    public SnapshotRestoreWorkload(@NonNull SessionSnapshot snapshot, boolean removeTileEntity, @NonNull ChunkRefresher refresher) {
+        this.snapshot = snapshot;
+        this.sections = snapshot.getSections();
+        this.removeTileEntity = removeTileEntity;
+        this.refresher = refresher;
+        this.next = this.sections.size() - 1;
+    }
+
+    @Override
+    public void compute() {
+        this.compute(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        while (this.next >= 0) {
+            SectionSnapshot section = this.sections.get(this.next--);
+            int size = section.unpack(this.positions, this.states);
+            this.blocks += size;
+
+            BatchBlockChanger.setBlocks(this.snapshot.getWorld(), section.getSectionX(), section.getSectionY(), section.getSectionZ(),
+                    this.positions, section.getPalette().length > 1 ? this.states : null, 0, size, section.getPalette(),
+                    false, this.removeTileEntity, this.refresher);
+
+            if (System.nanoTime() > stopTime) {
+                break;
+            }
+        }
+
+        return this.next < 0;
+    }
+}
@@ -0,0 +1,216 @@
+package net.limemc.fbp.api.workload.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.limemc.fbp.api.region.types.SectionCoverage;
+import net.limemc.fbp.api.region.types.SpanShape;
+import net.limemc.fbp.api.template.TemplateWriter;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.workload.Workload;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.DataPaletteBlock;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выгружает территорию в шаблон по чанкам.
+ * <ol>
+ *     <li>Основной поток в пределах бюджета копирует палитры секций чанка, которые пересекают фигуру.</li>
+ *     <li>Фоновый поток кодирует копии, сжимает и дописывает в файл через {@link TemplateWriter} в порядке чанков.</li>
+ * </ol>
+ * Пока в очереди записи {@link #MAX_QUEUED_CHUNKS} чанков, новые не копируются, поэтому память ограничена
+ * очередью независимо от размера территории. Нагрузка завершается, когда скопирован последний чанк,
+ * а запись файла заканчивается позже - её результат отдаёт {@link #getResult()}.
+ */
+public class TemplateExportWorkload implements Workload {
+    private static final int MAX_QUEUED_CHUNKS = 64;
+    private static final ExecutorService WRITER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fbp-template-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final World world;
+    private final SpanShape shape;
+    private final List<int[]> chunks;
+    private final TemplateWriter writer;
+    private final int minSectionY, maxSectionY;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+    /**
+     * Завершается после записи подвала и закрытия файла или с ошибкой чтения секций или записи.
+     */
+    @Getter
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    private int next;
+    /**
+     * Все чанки скопированы или выгрузка прервана: больше копировать нечего.
+     */
+    private boolean stopped;
+
+    /**
+     * @param chunks Координаты чанков {@code {x, z}} в порядке записи, например из
+     *               {@link net.limemc.fbp.api.region.types.SpanTerritory#getTerritoryChunkCoordinates(SpanShape)}.
+     */
+    public TemplateExportWorkload(@NonNull World world, @NonNull SpanShape shape, @NonNull List<int[]> chunks,
+                                  @NonNull TemplateWriter writer) {
+        this.world = world;
+        this.shape = shape;
+        this.chunks = chunks;
+        this.writer = writer;
+        this.minSectionY = Math.max(world.getMinHeight(), shape.getMinY()) >> 4;
+        this.maxSectionY = Math.min(world.getMaxHeight() - 1, shape.getMaxY()) >> 4;
+    }
+
+    /**
+     * Кодирует и записывает все чанки в текущем потоке.
+     */
+    @Override
+    public void compute() {
+        try {
+            while (this.next < this.chunks.size()) {
+                int[] chunk = this.chunks.get(this.next++);
+                this.write(this.copyChunk(chunk[0], chunk[1]));
+            }
+
+            this.writer.finish();
+            this.result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            this.fail(e);
+            throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+        }
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        if (this.result.isDone() || this.stopped) {
+            return true;
+        }
+
+        while (this.next < this.chunks.size() && !this.tail.isCompletedExceptionally()) {
+            if (this.queued.get() >= MAX_QUEUED_CHUNKS || System.nanoTime() > stopTime) {
+                return false;
+            }
+
+            int[] chunk = this.chunks.get(this.next);
+            ChunkJob job;
+
+            try {
+                job = this.copyChunk(chunk[0], chunk[1]);
+            } catch (RuntimeException e) {
+                // Без этого чанк был бы пропущен, а экспорт завершился бы успешно без его секций.
+                // Писатель закрывается после уже поставленных в очередь записей, а не во время них
+                this.stopped = true;
+                this.tail.whenCompleteAsync((ignored, throwable) -> this.fail(e), WRITER);
+                return true;
+            }
+
+            this.next++;
+
+            this.queued.incrementAndGet();
+            this.tail = this.tail.thenRunAsync(() -> {
+                try {
+                    this.write(job);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    this.queued.decrementAndGet();
+                }
+            }, WRITER);
+        }
+
+        this.stopped = true;
+        this.tail.thenRunAsync(() -> {
+            try {
+                this.writer.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, WRITER).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                this.fail(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            } else {
+                this.result.complete(null);
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Прерывает выгрузку, если копирование ещё не завершено: результат завершится ошибкой после уже поставленных
+     * в очередь записей. Иначе ничего не делает. Нужен, чтобы результат завершился, даже если нагрузку сняли
+     * с обработки из-за исключения. Вызывать из основного потока.
+     */
+    public void abort() {
+        if (this.stopped || this.result.isDone()) {
+            return;
+        }
+
+        this.stopped = true;
+        this.tail.whenCompleteAsync((ignored, throwable) ->
+                this.fail(new IllegalStateException("Export was stopped before all chunks were copied")), WRITER);
+    }
+
+    /**
+     * Копирует палитры секций чанка, которые пересекают фигуру. Секции вне фигуры остаются {@code null}.
+     */
+    private ChunkJob copyChunk(int chunkX, int chunkZ) {
+        ChunkJob job = new ChunkJob(chunkX, chunkZ, Math.max(0, this.maxSectionY - this.minSectionY + 1));
+
+        for (int sectionY = this.minSectionY; sectionY <= this.maxSectionY; sectionY++) {
+            SectionCoverage coverage = this.shape.getSectionCoverage(chunkX, sectionY, chunkZ);
+
+            if (coverage != SectionCoverage.OUTSIDE) {
+                job.states[sectionY - this.minSectionY] = BatchBlockChanger.copyStates(
+                        BatchBlockChanger.getSection(this.world, chunkX, sectionY, chunkZ));
+                job.full[sectionY - this.minSectionY] = coverage == SectionCoverage.INSIDE;
+            }
+        }
+
+        return job;
+    }
+
+    private void write(ChunkJob job) throws IOException {
+        for (int i = 0; i < job.states.length; i++) {
+            if (job.states[i] != null) {
+                this.writer.writeSection(job.chunkX, this.minSectionY + i, job.chunkZ, job.states[i], job.full[i]);
+            }
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        try {
+            this.writer.close();
+        } catch (IOException e) {
+            throwable.addSuppressed(e);
+        }
+
+        this.result.completeExceptionally(throwable);
+    }
+
+    private static final class ChunkJob {
+        private final int chunkX, chunkZ;
+        private final DataPaletteBlock<IBlockData>[] states;
+        private final boolean[] full;
+
+        @SuppressWarnings("unchecked")
+        private ChunkJob(int chunkX, int chunkZ, int sections) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.states = new DataPaletteBlock[sections];
+            this.full = new boolean[sections];
+        }
+    }
+}
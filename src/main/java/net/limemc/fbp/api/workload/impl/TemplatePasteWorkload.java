@@ -0,0 +1,163 @@
+package net.limemc.fbp.api.workload.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import net.limemc.fbp.api.refresh.ChunkRefresher;
+import net.limemc.fbp.api.snapshot.SessionSnapshot;
+import net.limemc.fbp.api.template.Template;
+import net.limemc.fbp.api.template.TemplateFormat;
+import net.limemc.fbp.api.template.TemplateSection;
+import net.limemc.fbp.api.utility.BatchBlockChanger;
+import net.limemc.fbp.api.utility.PackedPositions;
+import net.limemc.fbp.api.workload.Workload;
+import net.minecraft.world.level.block.state.IBlockData;
+import net.minecraft.world.level.chunk.ChunkSection;
+import org.bukkit.World;
+
+/**
+ * Вставляет {@link Template} углом в заданный блок. Секции шаблона читаются из отображённого файла по одной
+ * и сразу записываются в секции чанков через {@link BatchBlockChanger}, без промежуточной очереди блоков.
+ * Если угол не выровнен по сетке секций, секция шаблона делится между соседними секциями мира - до восьми.
+ * Индексы общей палитры шаблона используются как есть, поэтому состояния разбираются один раз на шаблон.
+ */
+public class TemplatePasteWorkload implements Workload {
+    private final Template template;
+    private final World world;
+    private final int originX, originY, originZ;
+    private final IBlockData[] palette;
+    private final boolean applyPhysics;
+    private final boolean removeTileEntity;
+    private final ChunkRefresher refresher;
+    private final int minSectionY, maxSectionY;
+
+    private final TemplateSection section = new TemplateSection();
+    private final short[][] positions = new short[8][4096];
+    private final short[][] states = new short[8][4096];
+    private final int[] sizes = new int[8];
+    private final short[] scratchPositions = new short[4096];
+    private final short[] scratchStates = new short[4096];
+
+    /**
+     * Если задан, перед записью каждой секции в него сохраняются прежние блоки.
+     */
+    @Setter
+    private SessionSnapshot snapshot;
+
+    /**
+     * Пропускать позиции, в которых уже стоит блок шаблона.
+     */
+    @Setter
+    private boolean skipUnchanged;
+
+    @Getter
+    private long skipped;
+
+    /**
+     * Количество прочитанных позиций шаблона, включая пропущенные.
+     */
+    @Getter
+    private long blocks;
+
+    private int next;
+
+    public TemplatePasteWorkload(@NonNull Template template, @NonNull World world, int originX, int originY, int originZ,
+                                 boolean applyPhysics, boolean removeTileEntity, @NonNull ChunkRefresher refresher) {
+        this.template = template;
+        this.world = world;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.palette = template.getStates();
+        this.applyPhysics = applyPhysics;
+        this.removeTileEntity = removeTileEntity;
+        this.refresher = refresher;
+        this.minSectionY = world.getMinHeight() >> 4;
+        this.maxSectionY = (world.getMaxHeight() - 1) >> 4;
+    }
+
+    @Override
+    public void compute() {
+        this.compute(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean compute(long stopTime) {
+        while (this.next < this.template.getSectionCount()) {
+            this.template.readSection(this.next++, this.section);
+            this.paste();
+
+            if (System.nanoTime() > stopTime) {
+                break;
+            }
+        }
+
+        return this.next >= this.template.getSectionCount();
+    }
+
+    private void paste() {
+        int minX = this.originX + (this.section.getSectionX() << 4);
+        int minY = this.originY + (this.section.getSectionY() << 4);
+        int minZ = this.originZ + (this.section.getSectionZ() << 4);
+        int shiftX = minX & 15, shiftY = minY & 15, shiftZ = minZ & 15;
+
+        for (int position = 0; position < 4096; position++) {
+            int block = this.section.getBlock(position);
+
+            if (block == TemplateFormat.NO_BLOCK) {
+                continue;
+            }
+
+            int x = PackedPositions.unpackX((short) position) + shiftX;
+            int y = PackedPositions.unpackY((short) position) + shiftY;
+            int z = PackedPositions.unpackZ((short) position) + shiftZ;
+            int target = (x >> 4) << 2 | (y >> 4) << 1 | z >> 4;
+            int size = this.sizes[target]++;
+
+            this.blocks++;
+
+            this.positions[target][size] = PackedPositions.pack(x, y, z);
+            this.states[target][size] = (short) block;
+        }
+
+        for (int target = 0; target < 8; target++) {
+            int size = this.sizes[target];
+
+            if (size == 0) {
+                continue;
+            }
+
+            this.sizes[target] = 0;
+            this.write((minX >> 4) + (target >> 2), (minY >> 4) + (target >> 1 & 1), (minZ >> 4) + (target & 1),
+                    this.positions[target], this.states[target], size);
+        }
+    }
+
+    private void write(int sectionX, int sectionY, int sectionZ, short[] positions, short[] states, int size) {
+        if (sectionY < this.minSectionY || sectionY > this.maxSectionY) {
+            return;
+        }
+
+        ChunkSection section = BatchBlockChanger.getSection(this.world, sectionX, sectionY, sectionZ);
+
+        if (this.skipUnchanged) {
+            int changed = BatchBlockChanger.filterUnchanged(section, positions, states, 0, size, this.palette,
+                    this.scratchPositions, this.scratchStates);
+
+            this.skipped += size - changed;
+            positions = this.scratchPositions;
+            states = this.scratchStates;
+            size = changed;
+        }
+
+        if (size == 0) {
+            return;
+        }
+
+        if (this.snapshot != null)
+            this.snapshot.capture(sectionX, sectionY, sectionZ, section, positions, 0, size);
+
+        BatchBlockChanger.setBlocks(this.world, section, sectionX, sectionY, sectionZ, positions, states, 0, size,
+                this.palette, this.applyPhysics, this.removeTileEntity, this.refresher);
+    }
+}